@@ -0,0 +1,88 @@
+import java.io.File;
+
+// Small benchmark harness shared by the programs in this folder. Each benchmark runs in
+// timed iterations after a warm-up, the way JMH does, and results are consumed so the JIT
+// cannot drop the measured work. Tune with -Dbench.warmup, -Dbench.iterations and
+// -Dbench.time (milliseconds per iteration).
+class Bench {
+    interface Op {
+        Object run() throws Exception;
+    }
+
+    private static volatile int sink;
+
+    private final int warmupIterations = Integer.getInteger("bench.warmup", 3);
+    private final int measureIterations = Integer.getInteger("bench.iterations", 5);
+    private final long iterationNanos = Long.getLong("bench.time", 1000) * 1000000L;
+
+    // Points the application at a scratch data folder; call before touching the application classes.
+    // Edits journaled by an earlier run are discarded so every run starts from the generated files.
+    static File dataDir() {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "sdms-bench");
+        System.setProperty("sdms.dataDir", dir.getPath());
+        new File(dir, "journal.log").delete();
+        new File(dir, "students.snapshot").delete();
+        File[] segments = new File(dir, "changes").listFiles();
+        for (File segment : segments == null ? new File[0] : segments) {
+            segment.delete();
+        }
+        return dir;
+    }
+
+    // Fastest of several runs after one warm-up run, for operations that take whole seconds
+    static long bestOf(int runs, Op op) throws Exception {
+        consume(op.run());
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            consume(op.run());
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    static void printHeader() {
+        System.out.printf("%-32s %14s %12s %8s%n", "Benchmark", "ns/op", "error", "ops");
+    }
+
+    // Average time per operation over the measured iterations, with the standard deviation
+    // across iterations as the error
+    void measure(String name, Op op) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(op);
+        }
+        double[] results = new double[measureIterations];
+        long totalOps = 0;
+        for (int i = 0; i < measureIterations; i++) {
+            long[] iteration = iteration(op);
+            results[i] = iteration[0] / (double) iteration[1];
+            totalOps += iteration[1];
+        }
+        double mean = 0;
+        for (double result : results) {
+            mean += result / results.length;
+        }
+        double variance = 0;
+        for (double result : results) {
+            variance += (result - mean) * (result - mean) / results.length;
+        }
+        System.out.printf("%-32s %14.1f %12.1f %8d%n", name, mean, Math.sqrt(variance), totalOps);
+    }
+
+    // Runs the operation until the iteration time is used up; returns {elapsed nanos, operations}
+    private long[] iteration(Op op) throws Exception {
+        long start = System.nanoTime();
+        long elapsed;
+        long ops = 0;
+        do {
+            consume(op.run());
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        return new long[] { elapsed, ops };
+    }
+
+    static void consume(Object result) {
+        sink += result == null ? 0 : System.identityHashCode(result);
+    }
+}
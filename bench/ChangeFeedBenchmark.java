@@ -0,0 +1,112 @@
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Times ChangeFeed appends on their own, with a commit after every edit and with one commit per
+// batch of edits. Then a writer appends changes as fast as it can while a consumer tails the feed
+// from the files, checking that every change arrives once, in order and intact; the feed is
+// reopened to check numbering carries on, and the retained segments are counted:
+// java -cp bin ChangeFeedBenchmark [changes]
+class ChangeFeedBenchmark {
+    private static final int BATCH = 1000;
+    private static final int RETAINED_SEGMENTS = 8;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        File dir = new File(Bench.dataDir(), "feed");
+        clear(dir);
+        ChangeFeed feed = new ChangeFeed(dir.getPath(), RETAINED_SEGMENTS);
+        feed.open();
+        String record = "grade,1000123,Discrete Structures 2,90,85,88,87.70";
+
+        Bench bench = new Bench();
+        Bench.printHeader();
+        bench.measure("append", () -> feed.append(record));
+        bench.measure("append, commit each", () -> {
+            feed.commit(feed.append(record));
+            return record;
+        });
+        int[] appended = { 0 };
+        bench.measure("append, commit per " + BATCH, () -> {
+            long seq = feed.append(record);
+            if (++appended[0] % BATCH == 0) {
+                feed.commit(seq);
+            }
+            return seq;
+        });
+        feed.commit();
+
+        clear(dir);
+        ChangeFeed tailed = new ChangeFeed(dir.getPath(), Integer.MAX_VALUE);
+        tailed.open();
+        AtomicReference<String> failure = new AtomicReference<>();
+        long start = System.nanoTime();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 1; i <= count; i++) {
+                    long seq = tailed.append("student," + i);
+                    if (i % BATCH == 0) {
+                        tailed.commit(seq);
+                    }
+                }
+                tailed.commit();
+            } catch (Exception e) {
+                failure.set("writer: " + e);
+            }
+        });
+        writer.start();
+        ChangeFeed.Cursor cursor = tailed.cursor(1);
+        long next = 1;
+        while (next <= count && failure.get() == null) {
+            List<ChangeFeed.Change> changes = cursor.next(BATCH);
+            for (ChangeFeed.Change change : changes) {
+                if (change.seq != next || !change.record.equals("student," + next)) {
+                    failure.set("expected change " + next + ", read " + change.seq + " " + change.record);
+                    break;
+                }
+                next++;
+            }
+            if (changes.isEmpty()) {
+                Thread.sleep(1);
+            }
+        }
+        writer.join();
+        long nanos = System.nanoTime() - start;
+        check(failure.get() == null, failure.get());
+        System.out.printf("%d changes written and tailed in %.0f ms, %.0f ns each%n", count, nanos / 1e6,
+                nanos / (double) count);
+
+        ChangeFeed reopened = new ChangeFeed(dir.getPath(), RETAINED_SEGMENTS);
+        reopened.open();
+        check(reopened.lastSeq() == count, "reopened feed ends at " + count + ", not " + reopened.lastSeq());
+        long seq = reopened.append("student,after");
+        check(seq == count + 1, "numbering carries on after reopening");
+        // Enough to start another segment, which drops the oldest beyond those kept
+        for (int i = 0; i <= ChangeFeed.SEGMENT_BYTES / record.length(); i++) {
+            reopened.append(record);
+        }
+        reopened.commit();
+        int segments = dir.list().length;
+        check(segments <= RETAINED_SEGMENTS, segments + " segments kept, at most " + RETAINED_SEGMENTS);
+        List<ChangeFeed.Change> oldest = reopened.read(1, 1);
+        check(!oldest.isEmpty() && oldest.get(0).seq > 1, "dropped changes are skipped");
+        check(reopened.read(count + 1, 1).get(0).record.equals("student,after"), "change read back by number");
+        System.out.printf("%d segments of %d MB kept, oldest change %d%n", segments, ChangeFeed.SEGMENT_BYTES >> 20,
+                oldest.get(0).seq);
+        System.out.println("OK");
+    }
+
+    private static void clear(File dir) {
+        File[] files = dir.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            file.delete();
+        }
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            System.out.println("FAILED: " + what);
+            System.exit(1);
+        }
+    }
+}
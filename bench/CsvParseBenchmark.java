@@ -0,0 +1,51 @@
+import java.io.*;
+
+// Compares the BufferedReader + split path the loaders used to take with MappedCsvReader,
+// parsing every field of a generated grades.csv
+class CsvParseBenchmark {
+    public static void main(String[] args) throws IOException {
+        File dir = Bench.dataDir();
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        new DataGenerator(42).write(dir, students, 8);
+        String gradeFile = new File(dir, "grades.csv").getPath();
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long splitChecksum = parseWithSplit(gradeFile);
+            long splitTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            long mappedChecksum = parseMapped(gradeFile);
+            long mappedTime = System.nanoTime() - start;
+            if (splitChecksum != mappedChecksum) {
+                throw new IllegalStateException("Parsers disagree: " + splitChecksum + " vs " + mappedChecksum);
+            }
+            System.out.printf("Round %d: split %.1f ms, mapped %.1f ms (%d rows)%n", round + 1, splitTime / 1e6,
+                    mappedTime / 1e6, students * 8);
+        }
+    }
+
+    private static long parseWithSplit(String fileName) throws IOException {
+        long checksum = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(",");
+                checksum += parts[0].length() + parts[1].length() + Integer.parseInt(parts[2])
+                        + Integer.parseInt(parts[3]) + Integer.parseInt(parts[4])
+                        + Math.round(Double.parseDouble(parts[5]) * 100);
+            }
+        }
+        return checksum;
+    }
+
+    private static long parseMapped(String fileName) throws IOException {
+        long checksum = 0;
+        try (MappedCsvReader reader = new MappedCsvReader(fileName)) {
+            while (reader.next()) {
+                checksum += reader.field(0).length() + reader.field(1).length() + reader.intField(2)
+                        + reader.intField(3) + reader.intField(4) + Math.round(reader.doubleField(5) * 100);
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,79 @@
+import java.io.*;
+import java.util.Random;
+
+// Writes synthetic students.csv, subjects.csv and grades.csv files for benchmarks.
+// Also runs on its own: java DataGenerator <folder> <students> [subjects per student] [seed]
+class DataGenerator {
+    private static final String[] LAST_NAMES = { "Santos", "Reyes", "Cruz", "Bautista", "Ocampo", "Garcia",
+            "Mendoza", "Torres", "Tomas", "Andres", "Castillo", "Flores", "Villanueva", "Ramos", "Aquino" };
+    private static final String[] FIRST_NAMES = { "Juan", "Maria", "Jose", "Ana", "Pedro", "Rosa", "Carlo",
+            "Liza", "Mark", "Grace", "Paolo", "Joy", "Miguel", "Clara", "Rafael" };
+    private static final String[] STREETS = { "Bobwhite Trail", "Porter Junction", "Mabini Street",
+            "Rizal Avenue", "Luna Road", "Bonifacio Drive" };
+    private static final String[] COURSES = { "BSCS", "BSIT", "BSCoE" };
+    private static final String[] SUBJECTS = { "Discrete Structures 2", "Web Development 2",
+            "Data Structures and Algorithms", "Computer Programming 2", "Linear Algebra", "Physics for Engineers",
+            "Technical Writing", "Operating Systems" };
+    private static final String[] INSTRUCTORS = { "Ramon Dizon", "Elena Soriano", "Victor Lim", "Teresa Uy" };
+
+    private final Random random;
+
+    DataGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java DataGenerator <folder> <students> [subjects per student] [seed]");
+            return;
+        }
+        File dir = new File(args[0]);
+        int students = Integer.parseInt(args[1]);
+        int subjectsPerStudent = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        new DataGenerator(seed).write(dir, students, subjectsPerStudent);
+        System.out.printf("Wrote %d students with %d subjects each to %s%n", students, subjectsPerStudent, dir);
+    }
+
+    static String studentId(int index) {
+        return Integer.toString(1000000 + index);
+    }
+
+    void write(File dir, int studentCount, int subjectsPerStudent) throws IOException {
+        dir.mkdirs();
+        try (BufferedWriter students = new BufferedWriter(new FileWriter(new File(dir, "students.csv")));
+                BufferedWriter subjects = new BufferedWriter(new FileWriter(new File(dir, "subjects.csv")));
+                BufferedWriter grades = new BufferedWriter(new FileWriter(new File(dir, "grades.csv")))) {
+            students.write("id,last_name,first_name,middle_name,address,gender,phone_number,email_address");
+            students.newLine();
+            for (int i = 0; i < studentCount; i++) {
+                String id = studentId(i);
+                String lastName = pick(LAST_NAMES);
+                String firstName = pick(FIRST_NAMES);
+                students.write(String.join(",", id, lastName, firstName, pick(LAST_NAMES),
+                        (100 + random.nextInt(9900)) + " " + pick(STREETS), random.nextBoolean() ? "M" : "F",
+                        Long.toString(9000000000L + random.nextInt(999999999)),
+                        firstName.toLowerCase() + "." + lastName.toLowerCase() + i + "@example.com",
+                        (1 + random.nextInt(12)) + "/" + (1 + random.nextInt(28)) + "/" + (1995 + random.nextInt(10)),
+                        pick(COURSES), "2/" + (1 + random.nextInt(12)) + "/2023"));
+                students.newLine();
+                for (int j = 0; j < subjectsPerStudent; j++) {
+                    String subject = SUBJECTS[j % SUBJECTS.length];
+                    subjects.write(String.join(",", id, subject, Integer.toString(100000 + j * 1111),
+                            pick(INSTRUCTORS)));
+                    subjects.newLine();
+                    int prelims = 60 + random.nextInt(41);
+                    int midterms = 60 + random.nextInt(41);
+                    int finals = 60 + random.nextInt(41);
+                    grades.write(String.format("%s,%s,%d,%d,%d,%.2f", id, subject, prelims, midterms, finals,
+                            0.30 * prelims + 0.30 * midterms + 0.40 * finals));
+                    grades.newLine();
+                }
+            }
+        }
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
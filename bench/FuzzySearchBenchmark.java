@@ -0,0 +1,96 @@
+import java.io.File;
+import java.util.List;
+
+// Builds the trigram index over a generated roster and times fuzzy searches of several kinds,
+// edits that move a student in the index, and the old way of finding a misspelled name, a scan
+// comparing every last name. Also checks that edits and deletes show up in the next search:
+// java -Xmx4g -cp bin FuzzySearchBenchmark [students]
+class FuzzySearchBenchmark {
+    private static final String[][] QUERIES = {
+            { "exact name", "Carlo Torres" },
+            { "misspelled name", "Karlo Toress" },
+            { "email fragment", "maria.cruz42" },
+            { "street and number", "9256 Mabini" },
+            { "phone number", "9773748218" },
+    };
+
+    public static void main(String[] args) throws Exception {
+        File dir = Bench.dataDir();
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        new DataGenerator(42).write(dir, students, 0);
+        System.setProperty("sdms.snapshot", "false");
+        StudentDataManagementSystem.loadStudents();
+        StudentRepository repository = StudentDataManagementSystem.repository();
+
+        System.gc();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        repository.fuzzyIndex();
+        long buildNanos = System.nanoTime() - start;
+        System.gc();
+        System.out.printf("%d students: index built in %.0f ms, %.0f MB of heap%n", students, buildNanos / 1e6,
+                (usedHeap() - heapBefore) / 1e6);
+
+        Bench bench = new Bench();
+        Bench.printHeader();
+        for (String[] query : QUERIES) {
+            bench.measure("fuzzy, " + query[0], () -> repository.findFuzzy(query[1], 10));
+        }
+        bench.measure("scan, misspelled last name", () -> {
+            int found = 0;
+            for (Student student : repository.students()) {
+                if (distance(student.getLastName(), "Toress") <= 2) {
+                    found++;
+                }
+            }
+            return found;
+        });
+        int[] cursor = { 0 };
+        String[] names = { "Dizon", "Soriano" };
+        bench.measure("edit a last name", () -> {
+            Student student = repository.findById(DataGenerator.studentId(cursor[0]++ % students));
+            repository.update(student, edited -> edited.setLastName(names[cursor[0] % 2]));
+            return student;
+        });
+
+        Student edited = repository.findById(DataGenerator.studentId(0));
+        edited = repository.update(edited, student -> student.setLastName("Zamboanguita"));
+        List<FuzzyIndex.Match> found = repository.findFuzzy("Zamboangita", 1);
+        check(!found.isEmpty() && found.get(0).student == edited, "edited student found by the new name");
+        repository.remove(edited);
+        found = repository.findFuzzy("Zamboanguita", 1);
+        check(found.isEmpty(), "deleted student no longer found");
+        System.out.println("OK");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(boolean condition, String what) {
+        if (!condition) {
+            System.out.println("FAILED: " + what);
+            System.exit(1);
+        }
+    }
+
+    private static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = Character.toLowerCase(a.charAt(i - 1)) == Character.toLowerCase(b.charAt(j - 1)) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,54 @@
+// Heap cost per grade: GradeColumns against the object-per-grade layout it replaced,
+// where every Subject carried four double scores and a reference to its own Grade object
+class GradeMemoryBenchmark {
+    static class LegacyGrade {
+        int prelims;
+        int midterms;
+        int finals;
+        double finalRating;
+    }
+
+    static class LegacySubjectScores {
+        double prelims;
+        double midterms;
+        double finals;
+        double finalRating;
+        LegacyGrade grade;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        long before = usedHeap();
+        LegacySubjectScores[] legacy = new LegacySubjectScores[count];
+        for (int i = 0; i < count; i++) {
+            legacy[i] = new LegacySubjectScores();
+            legacy[i].grade = new LegacyGrade();
+            legacy[i].grade.finalRating = i;
+        }
+        // Only the per-subject payload counts, not the array holding the references
+        long legacyBytes = usedHeap() - before - 4L * count;
+        legacy = null;
+
+        before = usedHeap();
+        long[] slots = new long[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = GradeColumns.INSTANCE.allocate(80, 85, 90, i);
+        }
+        // One long handle field per Subject plus the column arrays
+        long columnBytes = usedHeap() - before;
+
+        System.out.printf("%d grades%n", count);
+        System.out.printf("Object per grade: %.1f bytes/grade%n", legacyBytes / (double) count);
+        System.out.printf("Columnar:         %.1f bytes/grade%n", columnBytes / (double) count);
+        System.out.printf("Live grade slots: %d of %d%n", GradeColumns.INSTANCE.size(), slots.length);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Heap footprint of a loaded roster with dictionary-encoded fields, against the same rows held
+// as one fresh String per field, which is what every CSV load used to produce.
+// Run with a large heap, e.g. java -Xmx4g -cp bin HeapFootprintBenchmark 1000000
+class HeapFootprintBenchmark {
+    private static final String[] COURSES = { "BSCS", "BSIT", "BSCoE" };
+    private static final String[] SUBJECTS = { "Discrete Structures 2", "Web Development 2",
+            "Data Structures and Algorithms", "Computer Programming 2" };
+    private static final String[] INSTRUCTORS = { "Ramon Dizon", "Elena Soriano", "Victor Lim", "Teresa Uy" };
+
+    static class PlainStudent {
+        String id, lastName, firstName, middleName, address, gender, phoneNumber, emailAddress, dateOfBirth,
+                course, dateOfEnrollment;
+        List<PlainSubject> subjects = new ArrayList<>();
+    }
+
+    static class PlainSubject {
+        String name, courseNumber, instructorName;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int subjectsPerStudent = 4;
+
+        long before = usedHeap();
+        List<PlainStudent> plain = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            PlainStudent student = new PlainStudent();
+            student.id = fresh(Integer.toString(1000000 + i));
+            student.lastName = fresh("Santos");
+            student.firstName = fresh("Maria");
+            student.middleName = fresh("Reyes");
+            student.address = fresh((100 + i % 9000) + " Mabini Street");
+            student.gender = fresh(i % 2 == 0 ? "M" : "F");
+            student.phoneNumber = fresh(Long.toString(9000000000L + i));
+            student.emailAddress = fresh("student" + i + "@example.com");
+            student.dateOfBirth = fresh((1 + i % 12) + "/" + (1 + i % 28) + "/" + (1995 + i % 10));
+            student.course = fresh(COURSES[i % COURSES.length]);
+            student.dateOfEnrollment = fresh("2/" + (1 + i % 12) + "/2023");
+            for (int j = 0; j < subjectsPerStudent; j++) {
+                PlainSubject subject = new PlainSubject();
+                subject.name = fresh(SUBJECTS[j]);
+                subject.courseNumber = fresh(Integer.toString(100000 + j * 1111));
+                subject.instructorName = fresh(INSTRUCTORS[(i + j) % INSTRUCTORS.length]);
+                student.subjects.add(subject);
+            }
+            plain.add(student);
+        }
+        long plainBytes = usedHeap() - before;
+        int plainCount = plain.size();
+        plain = null;
+
+        before = usedHeap();
+        List<Student> encoded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Student student = new Student(fresh(Integer.toString(1000000 + i)), fresh("Santos"), fresh("Maria"),
+                    fresh("Reyes"), fresh((100 + i % 9000) + " Mabini Street"), fresh(i % 2 == 0 ? "M" : "F"),
+                    fresh(Long.toString(9000000000L + i)), fresh("student" + i + "@example.com"),
+                    fresh((1 + i % 12) + "/" + (1 + i % 28) + "/" + (1995 + i % 10)),
+                    fresh(COURSES[i % COURSES.length]), fresh("2/" + (1 + i % 12) + "/2023"));
+            for (int j = 0; j < subjectsPerStudent; j++) {
+                student.addSubject(new Subject(fresh(SUBJECTS[j]), fresh(Integer.toString(100000 + j * 1111)),
+                        fresh(INSTRUCTORS[(i + j) % INSTRUCTORS.length])));
+            }
+            encoded.add(student);
+        }
+        long encodedBytes = usedHeap() - before;
+
+        System.out.printf("%d students, %d subjects each%n", count, subjectsPerStudent);
+        System.out.printf("Plain Strings: %8.1f MB (%d students)%n", plainBytes / 1048576.0, plainCount);
+        System.out.printf("Encoded:       %8.1f MB (%d students)%n", encodedBytes / 1048576.0, encoded.size());
+    }
+
+    // A private copy, like the Strings a CSV reader creates for every field of every row
+    private static String fresh(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
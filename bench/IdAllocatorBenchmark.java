@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Draws new student IDs at 50% and 90% of the 7-digit space taken, the old way (random numbers
+// retried until the ID index has no such student) against IdAllocator. Each drawn ID is given
+// back so the occupancy stays put. Then several threads fill the rest of the space at once and
+// every ID is checked to have been handed out exactly once:
+// java -Xmx4g -cp bin IdAllocatorBenchmark [threads]
+class IdAllocatorBenchmark {
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        Bench bench = new Bench();
+        Bench.printHeader();
+        for (int percent : new int[] { 50, 90 }) {
+            int target = (int) ((long) IdAllocator.ID_COUNT * percent / 100);
+            IdAllocator allocator = new IdAllocator();
+            Set<String> index = ConcurrentHashMap.newKeySet(target);
+            while (allocator.used() < target) {
+                index.add(allocator.allocate());
+            }
+            bench.measure("random retry, " + percent + "% taken", () -> {
+                String id;
+                do {
+                    id = Integer.toString(ThreadLocalRandom.current().nextInt(IdAllocator.ID_COUNT)
+                            + IdAllocator.FIRST_ID);
+                } while (index.contains(id));
+                return id;
+            });
+            bench.measure("IdAllocator, " + percent + "% taken", () -> {
+                String id = allocator.allocate();
+                allocator.release(id);
+                return id;
+            });
+            index.clear();
+
+            if (percent == 90) {
+                fill(allocator, threads);
+            }
+        }
+    }
+
+    private static void fill(IdAllocator allocator, int threads) throws InterruptedException {
+        int before = allocator.used();
+        byte[] handedOut = new byte[IdAllocator.ID_COUNT];
+        AtomicReference<String> duplicate = new AtomicReference<>();
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    while (true) {
+                        String id = allocator.allocate();
+                        int index = Integer.parseInt(id) - IdAllocator.FIRST_ID;
+                        // Each index is written by at most one thread if the allocator is right
+                        if (handedOut[index]++ != 0) {
+                            duplicate.set(id);
+                        }
+                    }
+                } catch (IllegalStateException full) {
+                    // Every ID is taken
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long nanos = System.nanoTime() - start;
+        int drawn = IdAllocator.ID_COUNT - before;
+        System.out.printf("%d threads took the last %d IDs in %.0f ms, %.0f ns each%n", threads, drawn,
+                nanos / 1e6, nanos / (double) drawn);
+        if (duplicate.get() != null || allocator.used() != IdAllocator.ID_COUNT) {
+            System.out.println("FAILED: ID " + duplicate.get() + " handed out twice, " + allocator.used() + " taken");
+            System.exit(1);
+        }
+        System.out.println("OK: every ID handed out once");
+    }
+}
@@ -0,0 +1,21 @@
+import java.io.File;
+
+// Measures loadStudents at doubling roster sizes; time per row should stay flat
+class LoadBenchmark {
+    public static void main(String[] args) throws Exception {
+        File dir = Bench.dataDir();
+        int subjectsPerStudent = 5;
+        int[] sizes = { 25000, 50000, 100000, 200000 };
+
+        System.out.printf("%-10s %-10s %-12s %-12s%n", "Students", "Rows", "Load (ms)", "ns/row");
+        for (int size : sizes) {
+            new DataGenerator(42).write(dir, size, subjectsPerStudent);
+            long rows = (long) size * (1 + 2 * subjectsPerStudent);
+            long best = Bench.bestOf(5, () -> {
+                StudentDataManagementSystem.loadStudents();
+                return null;
+            });
+            System.out.printf("%-10d %-10d %-12.1f %-12.1f%n", size, rows, best / 1e6, best / (double) rows);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.File;
+
+// Benchmarks the hot paths of StudentDataManagementSystem against a generated roster:
+// java -cp bin OperationsBenchmark [students] [subjects per student]
+class OperationsBenchmark {
+    private static final String[] LAST_NAMES = { "Santos", "Reyes", "Cruz", "Nobody" };
+
+    public static void main(String[] args) throws Exception {
+        File dir = Bench.dataDir();
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int subjectsPerStudent = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        new DataGenerator(42).write(dir, students, subjectsPerStudent);
+        System.setProperty("sdms.snapshot", "false");
+        StudentDataManagementSystem.loadStudents();
+        System.out.printf("%d students, %d subjects each%n", students, subjectsPerStudent);
+
+        Bench bench = new Bench();
+        Bench.printHeader();
+        int[] cursor = { 0 };
+        bench.measure("findStudentById", () -> StudentDataManagementSystem
+                .findStudentById(DataGenerator.studentId(cursor[0]++ % students)));
+        bench.measure("findStudentById (missing)",
+                () -> StudentDataManagementSystem.findStudentById("0000000"));
+        bench.measure("findStudentsByLastName", () -> StudentDataManagementSystem
+                .findStudentsByLastName(LAST_NAMES[cursor[0]++ % LAST_NAMES.length]));
+        StudentRepository repository = StudentDataManagementSystem.repository();
+        String middle = repository.pageAt(StudentOrder.LAST_NAME, students / 20, 10).nextCursor;
+        bench.measure("page by offset (middle)",
+                () -> repository.pageAt(StudentOrder.LAST_NAME, students / 20, 10));
+        bench.measure("page by cursor (middle)", () -> repository.pageAfter(StudentOrder.LAST_NAME, middle, 10));
+        bench.measure("rebuildStatistics", () -> {
+            repository.rebuildStatistics();
+            return repository.statistics();
+        });
+        bench.measure("statistics by subject",
+                () -> repository.statistics().summaries(GradeStatistics.Dimension.SUBJECT));
+        bench.measure("top 10 by GWA", () -> repository.rankings().top(null, 10));
+        bench.measure("rank of student", () -> repository.rankings()
+                .rankOf(repository.findById(DataGenerator.studentId(cursor[0]++ % students)), true));
+        bench.measure("update", () -> {
+            Student student = repository.findById(DataGenerator.studentId(cursor[0]++ % students));
+            repository.update(student, edited -> { });
+            return student;
+        });
+        bench.measure("updateStudentFile", () -> {
+            Student student = StudentDataManagementSystem.findStudentById(
+                    DataGenerator.studentId(cursor[0]++ % students));
+            StudentDataManagementSystem.updateStudentFile(student);
+            return student;
+        });
+        bench.measure("updateStudentFile, flushed", () -> {
+            Student student = StudentDataManagementSystem.findStudentById(
+                    DataGenerator.studentId(cursor[0]++ % students));
+            StudentDataManagementSystem.updateStudentFile(student);
+            StudentDataManagementSystem.flushEdits();
+            return student;
+        });
+        bench.measure("saveGrades", StudentDataManagementSystem::saveGrades);
+        bench.measure("saveStudents", StudentDataManagementSystem::saveStudents);
+        bench.measure("loadStudents", () -> {
+            StudentDataManagementSystem.loadStudents();
+            return null;
+        });
+    }
+}
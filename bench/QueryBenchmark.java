@@ -0,0 +1,59 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Runs StudentQuery filters through the planner and through a hand-written loop over every
+// student, checks that both find the same students, and times them:
+// java -Xmx4g -cp bin QueryBenchmark [students] [subjects per student]
+class QueryBenchmark {
+    private static final String[] QUERIES = {
+            "course = BSIT and enrolled > 1/30/2023 and any finalRating < 75",
+            "id = 1000123",
+            "lastName = Cruz and firstName = Ana",
+            "enrolled >= 2/11/2023 and gwa >= 85",
+            "any (instructor = \"Victor Lim\" and finalRating < 70) and gender = F",
+            "email ~ example and all finals >= 60",
+    };
+
+    public static void main(String[] args) throws Exception {
+        File dir = Bench.dataDir();
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int subjectsPerStudent = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        new DataGenerator(42).write(dir, students, subjectsPerStudent);
+        System.setProperty("sdms.snapshot", "false");
+        StudentDataManagementSystem.loadStudents();
+        StudentRepository repository = StudentDataManagementSystem.repository();
+        System.out.printf("%d students, %d subjects each%n", students, subjectsPerStudent);
+
+        Bench bench = new Bench();
+        for (String text : QUERIES) {
+            StudentQuery query = StudentQuery.parse(text);
+            StudentQuery.Plan plan = repository.plan(query);
+            List<Student> planned = plan.stream().collect(Collectors.toList());
+            List<Student> looped = loop(repository, query);
+            if (planned.size() != looped.size() || !new HashSet<>(planned).equals(new HashSet<>(looped))) {
+                System.out.println("FAILED: " + text + " found " + planned.size() + " students, the loop "
+                        + looped.size());
+                System.exit(1);
+            }
+            System.out.println();
+            System.out.println(text);
+            System.out.println("  " + plan + ", " + planned.size() + " found");
+            Bench.printHeader();
+            bench.measure("planned", () -> repository.query(query).count());
+            bench.measure("loop over every student", () -> loop(repository, query).size());
+        }
+    }
+
+    private static List<Student> loop(StudentRepository repository, StudentQuery query) {
+        List<Student> found = new ArrayList<>();
+        for (Student student : repository.students()) {
+            if (query.test(student)) {
+                found.add(student);
+            }
+        }
+        return found;
+    }
+}
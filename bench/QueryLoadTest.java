@@ -0,0 +1,118 @@
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Load test for QueryServer: starts it on a free port over a generated roster, then has
+// concurrent clients send a mix of lookups, subject views, searches and page requests for a
+// fixed time and reports throughput and latency percentiles per endpoint:
+// java -cp bin QueryLoadTest [students] [clients] [seconds]
+class QueryLoadTest {
+    private static final String[] ENDPOINTS = { "student", "subjects", "search", "page" };
+    private static final String[] LAST_NAMES = { "Santos", "Reyes", "Cruz", "Bautista", "Ocampo", "Garcia" };
+
+    public static void main(String[] args) throws Exception {
+        File dir = Bench.dataDir();
+        // As --serve does, so responses do not wait for delayed ACKs
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        new DataGenerator(42).write(dir, students, 5);
+        StudentDataManagementSystem.loadStudents();
+
+        QueryServer server = new QueryServer(StudentDataManagementSystem.repository(), 0);
+        server.start();
+        String base = "http://127.0.0.1:" + server.port();
+        HttpClient client = HttpClient.newHttpClient();
+        System.out.printf("%d students, %d clients, %d s against %s%n", students, clients, seconds, base);
+
+        // Warm up the server and the client before measuring
+        run(client, base, students, clients, Math.max(1, seconds / 5) * 1000000000L, new Random(1));
+        long[][] latencies = run(client, base, students, clients, seconds * 1000000000L, new Random(2));
+        server.stop();
+
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s%n", "Endpoint", "req/s", "p50 ms", "p90 ms",
+                "p99 ms", "p99.9 ms", "max ms");
+        for (int e = 0; e < ENDPOINTS.length; e++) {
+            long[] sorted = latencies[e];
+            Arrays.sort(sorted);
+            System.out.printf("%-10s %10.0f %10.3f %10.3f %10.3f %10.3f %10.3f%n", ENDPOINTS[e],
+                    sorted.length / (double) seconds, percentile(sorted, 50), percentile(sorted, 90),
+                    percentile(sorted, 99), percentile(sorted, 99.9), percentile(sorted, 100));
+        }
+    }
+
+    // Runs the clients for the given time and returns the request latencies in nanoseconds by endpoint
+    private static long[][] run(HttpClient client, String base, int students, int clients, long nanos, Random seeds)
+            throws InterruptedException {
+        List<List<List<Long>>> perClient = new ArrayList<>();
+        Thread[] threads = new Thread[clients];
+        long deadline = System.nanoTime() + nanos;
+        for (int c = 0; c < clients; c++) {
+            List<List<Long>> latencies = new ArrayList<>();
+            for (int e = 0; e < ENDPOINTS.length; e++) {
+                latencies.add(new ArrayList<>());
+            }
+            perClient.add(latencies);
+            Random random = new Random(seeds.nextLong());
+            threads[c] = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    int endpoint = random.nextInt(ENDPOINTS.length);
+                    URI uri = URI.create(base + path(endpoint, random, students));
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri).build(),
+                                HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() != 200) {
+                            throw new IllegalStateException(uri + " returned " + response.statusCode());
+                        }
+                        Bench.consume(response.body());
+                    } catch (Exception ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    latencies.get(endpoint).add(System.nanoTime() - start);
+                }
+            });
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long[][] merged = new long[ENDPOINTS.length][];
+        for (int e = 0; e < ENDPOINTS.length; e++) {
+            int endpoint = e;
+            merged[e] = perClient.stream().flatMap(latencies -> latencies.get(endpoint).stream())
+                    .mapToLong(Long::longValue).toArray();
+        }
+        return merged;
+    }
+
+    private static String path(int endpoint, Random random, int students) {
+        String id = DataGenerator.studentId(random.nextInt(students));
+        switch (endpoint) {
+            case 0:
+                return "/students/" + id;
+            case 1:
+                return "/students/" + id + "/subjects";
+            case 2:
+                return "/search?lastName=" + LAST_NAMES[random.nextInt(LAST_NAMES.length)] + "&limit=20";
+            default:
+                return "/students?page=" + (1 + random.nextInt(Math.max(1, students / 10))) + "&size=10";
+        }
+    }
+
+    // Milliseconds at the given percentile of sorted latencies in nanoseconds
+    private static double percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,287 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Stress test for StudentRepository. Many threads increment grades on a few hot students at
+// once, and the final scores must account for every increment; the same run reading the old
+// score before taking the write lock shows how many would be lost. Writers then rename, add and remove students
+// and regrade students while readers look them up, search and page, and afterwards every
+// index, the grade statistics and the rankings must agree with the roster. Last, keyset page walks must see every student exactly once while other
+// students come and go. Exits with status 1 on any failure:
+// java -cp bin RepositoryStressTest [threads] [seconds]
+class RepositoryStressTest {
+    private static final int STUDENTS = 2000;
+    private static final int HOT_STUDENTS = 8;
+    private static final String[] NAMES = { "Santos", "Reyes", "Cruz", "Bautista" };
+
+    private static final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        File dir = Bench.dataDir();
+        new DataGenerator(42).write(dir, STUDENTS, 1);
+        StudentDataManagementSystem.loadStudents();
+        StudentRepository repository = StudentDataManagementSystem.repository();
+        // Built up front so the churn below keeps them current instead of the check building them
+        repository.statistics();
+        repository.rankings();
+        repository.fuzzyIndex();
+
+        long lost = increments(repository, threads, seconds, false);
+        System.out.printf("Read outside the lock: %d increments lost%n", lost);
+        lost = increments(repository, threads, seconds, true);
+        System.out.printf("Read inside the lock:  %d increments lost%n", lost);
+        if (lost != 0) {
+            fail("Lost " + lost + " increments under the write lock");
+        }
+
+        long reads = churn(repository, threads, seconds);
+        System.out.printf("Index churn: %d reads alongside writers%n", reads);
+        checkIndexes(repository);
+
+        long walks = pageWalks(repository, threads, seconds);
+        System.out.printf("Page walks: %d complete walks alongside inserts and deletes%n", walks);
+
+        if (failure.get() != null) {
+            failure.get().printStackTrace(System.out);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    // Each thread adds one to the prelims of a random hot student over and over, reading the old
+    // score inside the update or, unlocked, before it. Returns how many of the increments are
+    // missing from the final scores.
+    private static long increments(StudentRepository repository, int threads, int seconds, boolean locked)
+            throws InterruptedException {
+        for (int i = 0; i < HOT_STUDENTS; i++) {
+            repository.update(repository.findById(DataGenerator.studentId(i)),
+                    edited -> edited.getSubjects().get(0).setPrelims(0));
+        }
+        AtomicLong done = new AtomicLong();
+        run(threads, seconds, random -> {
+            Student student = repository.findById(DataGenerator.studentId(random.nextInt(HOT_STUDENTS)));
+            if (locked) {
+                repository.update(student, edited -> {
+                    Subject subject = edited.getSubjects().get(0);
+                    subject.setPrelims((int) subject.getPrelims() + 1);
+                });
+            } else {
+                int prelims = (int) student.getSubjects().get(0).getPrelims();
+                repository.update(student, edited -> edited.getSubjects().get(0).setPrelims(prelims + 1));
+            }
+            done.incrementAndGet();
+        });
+        long total = 0;
+        for (int i = 0; i < HOT_STUDENTS; i++) {
+            total += (long) repository.findById(DataGenerator.studentId(i)).getSubjects().get(0).getPrelims();
+        }
+        return done.get() - total;
+    }
+
+    // Writers rename students, add new ones and remove them again while readers look students up
+    // by ID, search by last name and scan pages. Returns the number of reads made.
+    private static long churn(StudentRepository repository, int threads, int seconds) throws InterruptedException {
+        AtomicInteger nextId = new AtomicInteger(9000000);
+        AtomicLong reads = new AtomicLong();
+        int writers = Math.max(1, threads / 2);
+        AtomicInteger thread = new AtomicInteger();
+        ThreadLocal<Boolean> writer = ThreadLocal.withInitial(() -> thread.getAndIncrement() < writers);
+        run(threads, seconds, random -> {
+            if (writer.get()) {
+                Student student = repository.findById(DataGenerator.studentId(random.nextInt(STUDENTS)));
+                repository.update(student, edited -> edited.setLastName(NAMES[random.nextInt(NAMES.length)]));
+                double rating = 60 + random.nextInt(4000) / 100.0;
+                repository.update(student, edited -> edited.getSubjects().get(0).setFinalRating(rating));
+                Student added = new Student(Integer.toString(nextId.getAndIncrement()),
+                        NAMES[random.nextInt(NAMES.length)], "Temp", "Temp", "1 Luna Street Pasig", "F",
+                        "0911111111", "temp@example.com", "1/1/2000", "BSIT", "2/1/2023");
+                if (!repository.add(added)) {
+                    fail("Could not add " + added.getId());
+                }
+                repository.remove(added);
+                return;
+            }
+            Student student = repository.findById(DataGenerator.studentId(random.nextInt(STUDENTS)));
+            if (student == null) {
+                fail("Lost student during churn");
+            }
+            for (Student found : repository.findByLastName(NAMES[random.nextInt(NAMES.length)])) {
+                if (found == null) {
+                    fail("Null in name index");
+                }
+            }
+            if (repository.students(random.nextInt(STUDENTS), 10).isEmpty()) {
+                fail("Empty page inside the roster");
+            }
+            reads.incrementAndGet();
+        });
+        return reads.get();
+    }
+
+    // Readers walk the whole roster in ID order a page at a time while writers add and remove
+    // students with higher IDs; each walk must see every original student exactly once
+    private static long pageWalks(StudentRepository repository, int threads, int seconds)
+            throws InterruptedException {
+        AtomicInteger nextId = new AtomicInteger(9000000);
+        AtomicLong walks = new AtomicLong();
+        int writers = Math.max(1, threads / 2);
+        AtomicInteger thread = new AtomicInteger();
+        ThreadLocal<Boolean> writer = ThreadLocal.withInitial(() -> thread.getAndIncrement() < writers);
+        run(threads, seconds, random -> {
+            if (writer.get()) {
+                Student added = new Student(Integer.toString(nextId.getAndIncrement()), "Temp", "Temp", "Temp",
+                        "1 Luna Street Pasig", "F", "0911111111", "temp@example.com", "1/1/2000", "BSIT",
+                        "2/1/2023");
+                repository.add(added);
+                repository.remove(added);
+                return;
+            }
+            boolean[] seen = new boolean[STUDENTS];
+            StudentRepository.Page page = repository.pageAfter(StudentOrder.ID, null, 1 + random.nextInt(50));
+            while (true) {
+                for (Student student : page.students) {
+                    int index = Integer.parseInt(student.getId()) - 1000000;
+                    if (index < STUDENTS) {
+                        if (seen[index]) {
+                            fail("Page walk saw " + student.getId() + " twice");
+                        }
+                        seen[index] = true;
+                    }
+                }
+                if (page.nextCursor == null) {
+                    break;
+                }
+                page = repository.pageAfter(StudentOrder.ID, page.nextCursor, page.students.size());
+            }
+            for (int i = 0; i < STUDENTS; i++) {
+                if (!seen[i]) {
+                    fail("Page walk missed " + DataGenerator.studentId(i));
+                }
+            }
+            walks.incrementAndGet();
+        });
+        return walks.get();
+    }
+
+    // Once writers stop, the roster, ID index and last name index must describe the same students
+    private static void checkIndexes(StudentRepository repository) {
+        List<Student> roster = repository.students();
+        if (roster.size() != STUDENTS) {
+            fail("Roster has " + roster.size() + " students, expected " + STUDENTS);
+        }
+        int indexed = 0;
+        for (String name : NAMES) {
+            indexed += repository.findByLastName(name).size();
+        }
+        for (Student student : roster) {
+            if (repository.findById(student.getId()) != student) {
+                fail("ID index disagrees for " + student.getId());
+            }
+            if (!repository.findByLastName(student.getLastName()).contains(student)) {
+                fail("Name index is missing " + student.getId());
+            }
+            if (!contains(NAMES, student.getLastName())) {
+                indexed++;
+            }
+        }
+        if (indexed != STUDENTS) {
+            fail("Name index holds " + indexed + " entries, expected " + STUDENTS);
+        }
+        if (repository.fuzzyIndex().size() != STUDENTS) {
+            fail("Fuzzy index holds " + repository.fuzzyIndex().size() + " students, expected " + STUDENTS);
+        }
+        for (int i = 0; i < roster.size(); i += 97) {
+            Student student = roster.get(i);
+            List<FuzzyIndex.Match> found = repository.findFuzzy(student.getEmailAddress(), 1);
+            if (found.isEmpty() || found.get(0).student != student) {
+                fail("Fuzzy search by email does not find " + student.getId());
+            }
+        }
+        List<Rankings.Ranked> expectedTop = Rankings.of(roster).top(null, STUDENTS);
+        List<Rankings.Ranked> actualTop = repository.rankings().top(null, STUDENTS);
+        for (int i = 0; i < Math.max(expectedTop.size(), actualTop.size()); i++) {
+            if (i >= expectedTop.size() || i >= actualTop.size()
+                    || expectedTop.get(i).student != actualTop.get(i).student
+                    || expectedTop.get(i).rank != actualTop.get(i).rank) {
+                fail("Ranking disagrees with a rebuild at place " + (i + 1));
+                break;
+            }
+            Rankings.Ranked ranked = repository.rankings().rankOf(actualTop.get(i).student, false);
+            if (ranked.rank != actualTop.get(i).rank) {
+                fail("Rank of " + ranked.student.getId() + " is " + ranked.rank + ", expected "
+                        + actualTop.get(i).rank);
+                break;
+            }
+        }
+        GradeStatistics rebuilt = GradeStatistics.of(roster);
+        for (GradeStatistics.Dimension dimension : GradeStatistics.Dimension.values()) {
+            Map<String, GradeStatistics.Summary> expected = rebuilt.summaries(dimension);
+            Map<String, GradeStatistics.Summary> actual = repository.statistics().summaries(dimension);
+            if (!expected.keySet().equals(actual.keySet())) {
+                fail("Statistics by " + dimension + " have groups " + actual.keySet() + ", expected "
+                        + expected.keySet());
+                continue;
+            }
+            for (String group : expected.keySet()) {
+                GradeStatistics.Summary want = expected.get(group);
+                GradeStatistics.Summary got = actual.get(group);
+                if (want.count != got.count || want.mean != got.mean || want.median != got.median
+                        || !Arrays.equals(want.bands, got.bands)) {
+                    fail("Statistics for " + group + " disagree with a rebuild");
+                }
+            }
+        }
+    }
+
+    private static boolean contains(String[] names, String name) {
+        for (String candidate : names) {
+            if (candidate.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    interface Step {
+        void run(Random random);
+    }
+
+    // Starts the threads together and runs the step in a loop on each until the time is up
+    private static void run(int threads, int seconds, Step step) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        long deadline = System.nanoTime() + seconds * 1000000000L;
+        List<Thread> running = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline && failure.get() == null) {
+                        step.run(random);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            worker.start();
+            running.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : running) {
+            worker.join();
+        }
+    }
+
+    private static void fail(String message) {
+        failure.compareAndSet(null, new AssertionError(message));
+    }
+}
@@ -0,0 +1,31 @@
+import java.io.File;
+
+// Compares startup from the CSV files with startup from the binary snapshot
+class SnapshotBenchmark {
+    public static void main(String[] args) throws Exception {
+        File dir = Bench.dataDir();
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        new DataGenerator(42).write(dir, students, 8);
+
+        System.setProperty("sdms.snapshot", "false");
+        long csvTime = bestLoadTime();
+        System.setProperty("sdms.snapshot", "true");
+        StudentDataManagementSystem.saveStudents();
+        long snapshotTime = bestLoadTime();
+
+        long csvBytes = new File(dir, "students.csv").length() + new File(dir, "subjects.csv").length()
+                + new File(dir, "grades.csv").length();
+        long snapshotBytes = new File(dir, "students.snapshot").length();
+        System.out.printf("%d students, 8 subjects each%n", students);
+        System.out.printf("%-10s %-12s %-12s%n", "Format", "Load (ms)", "Size (MB)");
+        System.out.printf("%-10s %-12.1f %-12.1f%n", "CSV", csvTime / 1e6, csvBytes / 1048576.0);
+        System.out.printf("%-10s %-12.1f %-12.1f%n", "Snapshot", snapshotTime / 1e6, snapshotBytes / 1048576.0);
+    }
+
+    private static long bestLoadTime() throws Exception {
+        return Bench.bestOf(5, () -> {
+            StudentDataManagementSystem.loadStudents();
+            return null;
+        });
+    }
+}
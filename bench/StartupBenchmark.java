@@ -0,0 +1,22 @@
+import java.io.File;
+
+// Times a full startup load with 1, 2, 4 and 8 loader threads
+class StartupBenchmark {
+    public static void main(String[] args) throws Exception {
+        File dir = Bench.dataDir();
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        new DataGenerator(42).write(dir, students, 8);
+        System.out.printf("%d students, %d cores available%n", students,
+                Runtime.getRuntime().availableProcessors());
+
+        System.out.printf("%-8s %-12s%n", "Threads", "Load (ms)");
+        for (int threads : new int[] { 1, 2, 4, 8 }) {
+            System.setProperty("sdms.loadThreads", Integer.toString(threads));
+            long best = Bench.bestOf(5, () -> {
+                StudentDataManagementSystem.loadStudents();
+                return null;
+            });
+            System.out.printf("%-8d %-12.1f%n", threads, best / 1e6);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import java.io.File;
+import java.io.Writer;
+import java.util.List;
+
+// Renders the student table the old way, one System.out.format call per row with the format
+// string concatenated each time, against TableRenderer, both into a writer that throws the text
+// away, then times a full table of every student to a file:
+// java -cp bin TableBenchmark [students]
+class TableBenchmark {
+    private static final int ROWS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        File dir = Bench.dataDir();
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        new DataGenerator(42).write(dir, students, 0);
+        System.setProperty("sdms.snapshot", "false");
+        StudentDataManagementSystem.loadStudents();
+        StudentRepository repository = StudentDataManagementSystem.repository();
+        List<Student> page = repository.students(0, ROWS);
+
+        Writer discard = Writer.nullWriter();
+        java.io.PrintWriter formatter = new java.io.PrintWriter(discard);
+        Bench bench = new Bench();
+        Bench.printHeader();
+        bench.measure("format, " + ROWS + " rows", () -> {
+            for (Student student : page) {
+                formatter.format("| %-" + 7 + "s | %-" + 15 + "s | %-" + 15 + "s | %-" + 15 + "s | %-" + 27
+                        + "s | %-" + 6 + "s | %-" + 12 + "s | %-" + 33 + "s | %-" + 13 + "s | %-" + 6 + "s | %-"
+                        + 18 + "s |\n", student.getId(), student.getLastName(), student.getFirstName(),
+                        student.getMiddleName(), student.getAddress(), student.getGender(),
+                        student.getPhoneNumber(), student.getEmailAddress(), student.getDateOfBirth(),
+                        student.getCourse(), student.getDateOfEnrollment());
+            }
+            formatter.flush();
+            return formatter;
+        });
+        bench.measure("TableRenderer, " + ROWS + " rows", () -> {
+            TableRenderer table = new TableRenderer(discard, TableRenderer.STUDENTS);
+            for (Student student : page) {
+                table.cell(student.getId()).cell(student.getLastName()).cell(student.getFirstName())
+                        .cell(student.getMiddleName()).cell(student.getAddress()).cell(student.getGender())
+                        .cell(student.getPhoneNumber()).cell(student.getEmailAddress())
+                        .cell(student.getDateOfBirth()).cell(student.getCourse())
+                        .cell(student.getDateOfEnrollment()).endRow();
+            }
+            table.flush();
+            return table;
+        });
+
+        File dump = new File(dir, "dump.txt");
+        long nanos = Bench.bestOf(3, () -> {
+            StudentDataManagementSystem.dumpStudents(dump.getPath());
+            return dump.length();
+        });
+        System.out.printf("Dump of %d students: %.0f ms, %.0f MB/s%n", students, nanos / 1e6,
+                dump.length() / (nanos / 1e9) / (1 << 20));
+        dump.delete();
+    }
+}
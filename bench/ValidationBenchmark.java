@@ -0,0 +1,61 @@
+import java.util.Random;
+import java.util.regex.Pattern;
+
+// Compares String.matches, a precompiled Pattern and the Validators fast paths for the fields
+// checked most often, then measures whole import rows through BulkImporter.parse.
+// A quarter of the sample values are invalid so the rejecting paths are measured too.
+class ValidationBenchmark {
+    private static final int SAMPLES = 1024;
+    private static final String NAME_REGEX = "^[A-Z][a-zA-Z]*$";
+    private static final String PHONE_NUMBER_REGEX = "\\d{10}";
+    private static final String DOB_REGEX = "^(0?[1-9]|[12][0-9]|3[01])[- \\/.](0?[1-9]|1[012])[- \\/.](19|20)\\d\\d$";
+    private static final String ENROLLMENT_DATE_REGEX = "^(0?[1-9]|1[0-2])/(0?[1-9]|[12][0-9]|3[01])/(19|20)\\d\\d$";
+
+    interface Check {
+        boolean test(String value);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        String[] names = new String[SAMPLES];
+        String[] phoneNumbers = new String[SAMPLES];
+        String[] birthDates = new String[SAMPLES];
+        String[] enrollmentDates = new String[SAMPLES];
+        String[] rows = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            boolean valid = random.nextInt(4) != 0;
+            names[i] = valid ? "Villanueva" : "villanueva";
+            phoneNumbers[i] = valid ? Long.toString(9000000000L + random.nextInt(999999999)) : "09-1234-567";
+            birthDates[i] = valid ? (1 + random.nextInt(28)) + "/" + (1 + random.nextInt(12)) + "/"
+                    + (1995 + random.nextInt(10)) : "32/1/2001";
+            enrollmentDates[i] = valid ? "2/" + (1 + random.nextInt(12)) + "/2023" : "2/1/23";
+            rows[i] = String.join(",", "student", "", "Cruz", names[i], "Santos", "12 Rizal Street Manila", "M",
+                    phoneNumbers[i], "juan" + i + "@example.com", birthDates[i], "BSCS", enrollmentDates[i]);
+        }
+
+        Bench bench = new Bench();
+        Bench.printHeader();
+        compare(bench, "name", names, NAME_REGEX, value -> Validators.name(value).isValid());
+        compare(bench, "phone number", phoneNumbers, PHONE_NUMBER_REGEX,
+                value -> Validators.phoneNumber(value).isValid());
+        compare(bench, "date of birth", birthDates, DOB_REGEX, value -> Validators.dateOfBirth(value).isValid());
+        compare(bench, "enrollment date", enrollmentDates, ENROLLMENT_DATE_REGEX,
+                value -> Validators.dateOfEnrollment(value).isValid());
+        int[] cursor = { 0 };
+        bench.measure("import row", () -> BulkImporter.parse(1, rows[cursor[0]++ & (SAMPLES - 1)]));
+    }
+
+    private static void compare(Bench bench, String field, String[] values, String regex, Check validator)
+            throws Exception {
+        Pattern pattern = Pattern.compile(regex);
+        for (String value : values) {
+            if (value.matches(regex) != validator.test(value)) {
+                throw new IllegalStateException("Validator disagrees with " + regex + " on " + value);
+            }
+        }
+        int[] cursor = { 0 };
+        bench.measure(field + " (matches)", () -> values[cursor[0]++ & (SAMPLES - 1)].matches(regex));
+        bench.measure(field + " (Pattern)", () -> pattern.matcher(values[cursor[0]++ & (SAMPLES - 1)]).matches());
+        bench.measure(field + " (Validators)", () -> validator.test(values[cursor[0]++ & (SAMPLES - 1)]));
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Reads a bulk import file of students, subjects and grades. Each line is either a CSV row whose
+// first field names the record type:
+//   student,<id or blank>,<last>,<first>,<middle>,<address>,<gender>,<phone>,<email>,<birth>,<course>,<enrollment>
+//   subject,<student id>,<name>,<course number>,<instructor>
+//   grade,<student id>,<subject>,<prelims>,<midterms>,<finals>
+// or a flat JSON object with a "type" field and the same fields by name. Lines are parsed and
+// validated in parallel; each valid row comes back in the journal record layout so it can be
+// applied and journaled exactly like an interactive edit.
+class BulkImporter {
+    private static final String[] STUDENT_FIELDS = { "id", "lastName", "firstName", "middleName", "address",
+            "gender", "phoneNumber", "emailAddress", "dateOfBirth", "course", "dateOfEnrollment" };
+    private static final String[] SUBJECT_FIELDS = { "studentId", "name", "courseNumber", "instructorName" };
+    private static final String[] GRADE_FIELDS = { "studentId", "subject", "prelims", "midterms", "finals" };
+
+    // One line of the import file. A valid row holds its journal record fields, an invalid one
+    // the reason it was rejected.
+    static class Row {
+        final int line;
+        final String[] parts;
+        final String error;
+
+        Row(int line, String[] parts, String error) {
+            this.line = line;
+            this.parts = parts;
+            this.error = error;
+        }
+
+        boolean isValid() {
+            return error == null;
+        }
+    }
+
+    // Returns one row per non-blank, non-comment line, in file order
+    static List<Row> read(String fileName) throws IOException {
+        List<String> lines = Files.readAllLines(Paths.get(fileName), StandardCharsets.UTF_8);
+        return IntStream.range(0, lines.size()).parallel()
+                .filter(i -> !lines.get(i).isBlank() && !lines.get(i).startsWith("#"))
+                .mapToObj(i -> parse(i + 1, lines.get(i).strip()))
+                .collect(Collectors.toList());
+    }
+
+    static Row parse(int line, String text) {
+        String[] parts;
+        try {
+            parts = text.startsWith("{") ? fromJson(parseJson(text)) : text.split(",", -1);
+        } catch (IllegalArgumentException e) {
+            return new Row(line, null, e.getMessage());
+        }
+        String error = validate(parts);
+        return new Row(line, error == null ? parts : null, error);
+    }
+
+    private static String[] fromJson(Map<String, String> object) {
+        String type = object.get("type");
+        String[] names;
+        if ("student".equals(type)) {
+            names = STUDENT_FIELDS;
+        } else if ("subject".equals(type)) {
+            names = SUBJECT_FIELDS;
+        } else if ("grade".equals(type)) {
+            names = GRADE_FIELDS;
+        } else {
+            throw new IllegalArgumentException("Unknown record type: " + type);
+        }
+        String[] parts = new String[names.length + 1];
+        parts[0] = type;
+        for (int i = 0; i < names.length; i++) {
+            String value = object.get(names[i]);
+            parts[i + 1] = value == null ? "" : value;
+        }
+        return parts;
+    }
+
+    // Checks the fields of one record and normalizes them in place the way addStudent does.
+    // Returns null when the record is valid.
+    private static String validate(String[] parts) {
+        for (String part : parts) {
+            if (part.indexOf(',') >= 0 || part.indexOf('\n') >= 0) {
+                return "Fields must not contain commas or line breaks.";
+            }
+        }
+        String error;
+        switch (parts[0]) {
+            case "student":
+                if (parts.length != 12) {
+                    return "A student record needs 11 fields.";
+                }
+                if (!parts[1].isEmpty() && (error = check("Student ID", Validators.studentId(parts[1]))) != null) {
+                    return error;
+                }
+                if ((error = check("Last name", Validators.name(parts[2]))) != null
+                        || (error = check("First name", Validators.name(parts[3]))) != null
+                        || (error = check("Middle name", Validators.name(parts[4]))) != null
+                        || (error = check("Address", Validators.address(parts[5]))) != null
+                        || (error = check("Gender", Validators.gender(parts[6]))) != null
+                        || (error = check("Phone number", Validators.phoneNumber(parts[7]))) != null
+                        || (error = check("Email address", Validators.emailAddress(parts[8]))) != null
+                        || (error = check("Date of birth", Validators.dateOfBirth(parts[9]))) != null
+                        || (error = check("Course", Validators.course(parts[10]))) != null
+                        || (error = check("Date of enrollment", Validators.dateOfEnrollment(parts[11]))) != null) {
+                    return error;
+                }
+                parts[6] = Validators.normalizeGender(parts[6]);
+                parts[9] = Validators.stripLeadingZeros(parts[9]);
+                parts[11] = Validators.stripLeadingZeros(parts[11]);
+                return null;
+            case "subject":
+                if (parts.length != 5) {
+                    return "A subject record needs 4 fields.";
+                }
+                if (parts[1].isEmpty() || parts[2].isEmpty()) {
+                    return "A subject needs a student ID and a name.";
+                }
+                if ((error = check("Course number", Validators.courseNumber(parts[3]))) != null
+                        || (error = check("Instructor name", Validators.instructorName(parts[4]))) != null) {
+                    return error;
+                }
+                return null;
+            case "grade":
+                if (parts.length != 6) {
+                    return "A grade record needs 5 fields.";
+                }
+                if (parts[1].isEmpty() || parts[2].isEmpty()) {
+                    return "A grade needs a student ID and a subject.";
+                }
+                if ((error = check("Prelims", Validators.score(parts[3]))) != null
+                        || (error = check("Midterms", Validators.score(parts[4]))) != null
+                        || (error = check("Finals", Validators.score(parts[5]))) != null) {
+                    return error;
+                }
+                return null;
+            default:
+                return "Unknown record type: " + parts[0];
+        }
+    }
+
+    private static String check(String field, Validators.Result result) {
+        return result.isValid() ? null : String.format("%s %s (%s).", field, result.description, result);
+    }
+
+    // Parses one flat JSON object. Nested objects and arrays are not part of the format;
+    // numbers, booleans and null are kept as their text.
+    static Map<String, String> parseJson(String text) {
+        Map<String, String> object = new HashMap<>();
+        int[] pos = { skipSpace(text, 0) };
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+            return object;
+        }
+        while (true) {
+            String key = readString(text, pos);
+            expect(text, pos, ':');
+            String value = peek(text, pos) == '"' ? readString(text, pos) : readLiteral(text, pos);
+            object.put(key, value);
+            char c = peek(text, pos);
+            pos[0]++;
+            if (c == '}') {
+                break;
+            }
+            if (c != ',') {
+                throw new IllegalArgumentException("Malformed JSON at column " + pos[0] + ".");
+            }
+        }
+        if (skipSpace(text, pos[0]) != text.length()) {
+            throw new IllegalArgumentException("Unexpected text after JSON object.");
+        }
+        return object;
+    }
+
+    private static String readString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder value = new StringBuilder();
+        int i = pos[0];
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c == '"') {
+                pos[0] = i;
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= text.length()) {
+                break;
+            }
+            char escape = text.charAt(i++);
+            switch (escape) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 > text.length()) {
+                        throw new IllegalArgumentException("Malformed JSON escape.");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Malformed JSON escape.");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    value.append(escape);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated JSON string.");
+    }
+
+    private static String readLiteral(String text, int[] pos) {
+        int start = pos[0];
+        int end = start;
+        while (end < text.length() && ",} \t".indexOf(text.charAt(end)) < 0) {
+            end++;
+        }
+        if (end == start) {
+            throw new IllegalArgumentException("Malformed JSON at column " + (start + 1) + ".");
+        }
+        pos[0] = end;
+        String literal = text.substring(start, end);
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static void expect(String text, int[] pos, char expected) {
+        if (peek(text, pos) != expected) {
+            throw new IllegalArgumentException("Malformed JSON at column " + (pos[0] + 1) + ".");
+        }
+        pos[0]++;
+    }
+
+    // Skips whitespace and returns the next character, or 0 at the end of the text
+    private static char peek(String text, int[] pos) {
+        pos[0] = skipSpace(text, pos[0]);
+        return pos[0] < text.length() ? text.charAt(pos[0]) : 0;
+    }
+
+    private static int skipSpace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,415 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+// Ordered, durable log of every change made to the data, for other systems to follow without
+// diffing the CSV files. Each change is the journal record of the edit behind a sequence number
+// that only grows, one line "<crc32>|<seq>,<type>,<fields>". Unlike the journal it is not
+// emptied at checkpoints; it is split into segment files named after their first sequence
+// number, a new one started once the current one reaches SEGMENT_BYTES, and the oldest removed
+// once there are more than the retained number of segments.
+//
+// Like the journal, changes are buffered by append and written and fsynced together by commit.
+// The buffer is bounded: an append that fills it hands the batch to the file without waiting
+// for an fsync, so a burst of edits neither grows the heap nor stalls on the disk.
+class ChangeFeed {
+    static final int SEGMENT_BYTES = 4 << 20;
+    private static final int DEFAULT_RETAINED_SEGMENTS = 256;
+    private static final int MAX_PENDING_BYTES = 1 << 20;
+    private static final int READ_BYTES = 64 << 10;
+    private static final String SUFFIX = ".log";
+
+    static final class Change {
+        final long seq;
+        final String record;
+
+        Change(long seq, String record) {
+            this.seq = seq;
+            this.record = record;
+        }
+
+        String type() {
+            int comma = record.indexOf(',');
+            return comma < 0 ? record : record.substring(0, comma);
+        }
+
+        String[] fields() {
+            return record.split(",", -1);
+        }
+    }
+
+    private final Path dir;
+    private final int retainedSegments;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final Object commitLock = new Object();
+    private FileChannel channel;
+    private long segmentBytes;
+    private long appendedSeq;
+    private long writtenSeq;
+    private volatile long durableSeq;
+    private volatile boolean opened;
+
+    ChangeFeed(String dirName) {
+        this(dirName, Integer.getInteger("sdms.changes.segments", DEFAULT_RETAINED_SEGMENTS));
+    }
+
+    ChangeFeed(String dirName, int retainedSegments) {
+        if (retainedSegments < 1) {
+            throw new IllegalArgumentException("At least one change segment must be kept.");
+        }
+        this.dir = Paths.get(dirName);
+        this.retainedSegments = retainedSegments;
+    }
+
+    // Finds the last change on disk so numbering carries on from it, cutting off a torn tail.
+    // The first append opens the feed if this has not been called.
+    void open() throws IOException {
+        synchronized (commitLock) {
+            if (opened) {
+                return;
+            }
+            Files.createDirectories(dir);
+            Map.Entry<Long, Path> last = segments().lastEntry();
+            long lastSeq = 0;
+            if (last != null) {
+                byte[] bytes = Files.readAllBytes(last.getValue());
+                int end = 0;
+                lastSeq = last.getKey() - 1;
+                while (end < bytes.length) {
+                    int next = end;
+                    while (next < bytes.length && bytes[next] != '\n') {
+                        next++;
+                    }
+                    Change change = next < bytes.length ? verify(bytes, end, next) : null;
+                    if (change == null) {
+                        break;
+                    }
+                    lastSeq = change.seq;
+                    end = next + 1;
+                }
+                if (end < bytes.length) {
+                    System.out.println("Ignoring incomplete change entry at byte " + end + ".");
+                }
+                channel = FileChannel.open(last.getValue(), StandardOpenOption.WRITE);
+                channel.truncate(end);
+                channel.position(end);
+                segmentBytes = end;
+            }
+            synchronized (this) {
+                appendedSeq = lastSeq;
+                writtenSeq = lastSeq;
+                durableSeq = lastSeq;
+            }
+            opened = true;
+        }
+    }
+
+    // Buffers a change and returns its sequence number. Fails without numbering the change if
+    // the feed cannot be opened, so the numbers never skip one that was not written.
+    long append(String record) throws IOException {
+        if (!opened) {
+            open();
+        }
+        long seq;
+        boolean full;
+        synchronized (this) {
+            seq = ++appendedSeq;
+            byte[] payload = (seq + "," + record).getBytes(StandardCharsets.UTF_8);
+            byte[] checksum = (Long.toHexString(crc(payload)) + "|").getBytes(StandardCharsets.UTF_8);
+            pending.write(checksum, 0, checksum.length);
+            pending.write(payload, 0, payload.length);
+            pending.write('\n');
+            full = pending.size() >= MAX_PENDING_BYTES;
+        }
+        if (full) {
+            try {
+                synchronized (commitLock) {
+                    write();
+                }
+            } catch (IOException e) {
+                // The batch stays pending for the next commit, which reports the failure
+                System.out.println("Error writing change feed: " + e.getMessage());
+            }
+        }
+        return seq;
+    }
+
+    // The number the next append will get
+    long nextSeq() throws IOException {
+        if (!opened) {
+            open();
+        }
+        synchronized (this) {
+            return appendedSeq + 1;
+        }
+    }
+
+    void commit() throws IOException {
+        long seq;
+        synchronized (this) {
+            seq = appendedSeq;
+        }
+        commit(seq);
+    }
+
+    // Returns once the change with the given sequence number is on disk, sharing the fsync with
+    // every change appended before it, as Journal.commit does
+    void commit(long seq) throws IOException {
+        synchronized (commitLock) {
+            if (durableSeq >= seq) {
+                return;
+            }
+            long batchSeq = write();
+            if (channel != null) {
+                channel.force(false);
+            }
+            durableSeq = batchSeq;
+        }
+    }
+
+    long lastSeq() {
+        return durableSeq;
+    }
+
+    // Up to max changes from fromSeq on, in order; see Cursor
+    List<Change> read(long fromSeq, int max) throws IOException {
+        return new Cursor(fromSeq).next(max);
+    }
+
+    Cursor cursor(long fromSeq) {
+        return new Cursor(fromSeq);
+    }
+
+    // A consumer's place in the feed. It reads only the files, a bounded buffer at a time from
+    // where the last read stopped, so a consumer in another process sees each change once it is
+    // written and following the feed costs the same however long the segments are. If its place
+    // has been dropped with an old segment it carries on from the oldest change kept.
+    final class Cursor {
+        private long nextSeq;
+        private long segment = -1;
+        private long position;
+        private byte[] buffer = new byte[READ_BYTES];
+
+        private Cursor(long fromSeq) {
+            this.nextSeq = fromSeq;
+        }
+
+        long nextSeq() {
+            return nextSeq;
+        }
+
+        List<Change> next(int max) throws IOException {
+            List<Change> changes = new ArrayList<>();
+            while (changes.size() < max) {
+                TreeMap<Long, Path> segments = segments();
+                if (segments.isEmpty()) {
+                    break;
+                }
+                if (segment < 0 || !segments.containsKey(segment)) {
+                    Long first = segments.floorKey(nextSeq);
+                    segment = first != null ? first : segments.firstKey();
+                    position = 0;
+                }
+                // A segment with a later one after it is complete, so reading it to the end
+                // leaves nothing behind
+                Long later = segments.higherKey(segment);
+                try {
+                    readSegment(segments.get(segment), max, changes);
+                } catch (NoSuchFileException e) {
+                    // Dropped by retention since the listing
+                    segment = -1;
+                    continue;
+                }
+                if (changes.size() == max || later == null) {
+                    break;
+                }
+                segment = later;
+                position = 0;
+            }
+            return changes;
+        }
+
+        // Reads intact changes until max, the end of the file or a torn line, which can only be
+        // a write still in progress or one cut short by a crash
+        private void readSegment(Path file, int max, List<Change> changes) throws IOException {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+                while (changes.size() < max) {
+                    int length = in.read(ByteBuffer.wrap(buffer), position);
+                    if (length <= 0) {
+                        return;
+                    }
+                    int start = 0;
+                    while (changes.size() < max) {
+                        int end = start;
+                        while (end < length && buffer[end] != '\n') {
+                            end++;
+                        }
+                        if (end == length) {
+                            break;
+                        }
+                        Change change = verify(buffer, start, end);
+                        if (change == null) {
+                            return;
+                        }
+                        if (change.seq >= nextSeq) {
+                            changes.add(change);
+                            nextSeq = change.seq + 1;
+                        }
+                        start = end + 1;
+                    }
+                    if (start == 0) {
+                        if (length < buffer.length) {
+                            return;
+                        }
+                        // A line longer than the buffer
+                        buffer = new byte[buffer.length * 2];
+                    }
+                    position += start;
+                }
+            }
+        }
+    }
+
+    // Writes the pending batch to the current segment without forcing it, starting a new
+    // segment first if this one is full. Called holding the commit lock. If the write fails the
+    // batch goes back in front of anything appended since and the segment is cut back to its
+    // last whole change, so the next commit writes it again without a gap or a torn line.
+    private long write() throws IOException {
+        if (!opened) {
+            throw new IOException("The change feed could not be opened.");
+        }
+        byte[] batch;
+        long batchSeq;
+        synchronized (this) {
+            batchSeq = appendedSeq;
+            if (pending.size() == 0) {
+                return batchSeq;
+            }
+            batch = pending.toByteArray();
+            pending.reset();
+        }
+        try {
+            if (channel == null || segmentBytes >= SEGMENT_BYTES) {
+                rotate(writtenSeq + 1);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                byte[] later = pending.toByteArray();
+                pending.reset();
+                pending.write(batch, 0, batch.length);
+                pending.write(later, 0, later.length);
+            }
+            discardPartialWrite();
+            throw e;
+        }
+        segmentBytes += batch.length;
+        writtenSeq = batchSeq;
+        return batchSeq;
+    }
+
+    private void discardPartialWrite() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.truncate(segmentBytes);
+            channel.position(segmentBytes);
+        } catch (IOException e) {
+            // Leave the torn line behind and write on in a new segment; readers skip to it
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+            channel = null;
+        }
+    }
+
+    // Forces and closes the current segment and starts a new one. A failure leaves no segment
+    // open, so the next write starts over with a new one.
+    private void rotate(long firstSeq) throws IOException {
+        FileChannel last = channel;
+        channel = null;
+        if (last != null) {
+            try {
+                last.force(false);
+            } finally {
+                last.close();
+            }
+        }
+        Files.createDirectories(dir);
+        channel = FileChannel.open(dir.resolve(segmentName(firstSeq)), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentBytes = 0;
+        TreeMap<Long, Path> segments = segments();
+        while (segments.size() > retainedSegments) {
+            Files.deleteIfExists(segments.pollFirstEntry().getValue());
+        }
+    }
+
+    private TreeMap<Long, Path> segments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        if (!Files.isDirectory(dir)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    // Not a segment
+                }
+            }
+        }
+        return segments;
+    }
+
+    // Zero-padded so the files list in order
+    static String segmentName(long firstSeq) {
+        return String.format("%019d%s", firstSeq, SUFFIX);
+    }
+
+    private static Change verify(byte[] bytes, int start, int end) {
+        int separator = start;
+        while (separator < end && bytes[separator] != '|') {
+            separator++;
+        }
+        int comma = separator + 1;
+        while (comma < end && bytes[comma] != ',') {
+            comma++;
+        }
+        if (comma >= end) {
+            return null;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, separator + 1, end - separator - 1);
+        String expected = new String(bytes, start, separator - start, StandardCharsets.UTF_8);
+        if (!expected.equals(Long.toHexString(crc32.getValue()))) {
+            return null;
+        }
+        try {
+            long seq = Long.parseLong(new String(bytes, separator + 1, comma - separator - 1, StandardCharsets.UTF_8));
+            return new Change(seq, new String(bytes, comma + 1, end - comma - 1, StandardCharsets.UTF_8));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long crc(byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        return crc32.getValue();
+    }
+}
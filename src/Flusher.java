@@ -0,0 +1,170 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Writes edit records behind the edits, so the menu returns without waiting for the disk. Records
+// collect in memory and a background thread hands them to the writer together once the oldest
+// has waited intervalMillis or batchRecords are waiting, then runs afterWrite, where checkpoints
+// happen. An interval of 0 writes each record as it comes instead.
+//
+// Records are "<type>,<fields>" lines keyed by the entity they change. A record replaces a waiting
+// one with the same key and type in place, so a student edited five times before a flush is
+// written once, in the place of its first edit. Records that build on it (a subject needs its
+// student, a grade its subject) stay after it, and since every record holds the whole state of
+// its entity, the last one written is the one that counts. A record with the same key but another
+// type, like a delete after an edit, is never merged: it starts a new group written after the
+// waiting ones, so a delete and a re-add never swap places.
+//
+// At maxPending waiting records, the thread recording the next one writes the batch itself, so a
+// burst of edits cannot outgrow memory. flush() does the same and returns once everything
+// recorded before it has been written. Batches are taken and written under one lock, so they
+// reach the writer in the order they were recorded whichever thread writes them.
+//
+// A writer that fails throws, and the batch goes back in front of the records made since, to be
+// handed to it again. flush() throws the failure, so nothing counts as saved that was not; the
+// background thread reports it and tries again after an interval, and at least a second.
+class Flusher {
+    // Least wait before the background thread retries a failed write
+    private static final long RETRY_MILLIS = 1000;
+    private final long intervalNanos;
+    private final int batchRecords;
+    private final int maxPending;
+    private final Function<String, String> keyOf;
+    private final Consumer<List<String>> writer;
+    private final Runnable afterWrite;
+    private final Object lock = new Object();
+    // Held while a batch is taken and written
+    private final Object writing = new Object();
+    private List<LinkedHashMap<String, String>> groups = new ArrayList<>();
+    private int pending;
+    private long oldestNanos;
+    private Thread thread;
+
+    Flusher(long intervalMillis, int batchRecords, Function<String, String> keyOf, Consumer<List<String>> writer,
+            Runnable afterWrite) {
+        if (intervalMillis < 0 || batchRecords < 1) {
+            throw new IllegalArgumentException(
+                    "The flush interval cannot be negative and a batch must hold at least one record.");
+        }
+        this.intervalNanos = intervalMillis * 1000000L;
+        this.batchRecords = batchRecords;
+        this.maxPending = batchRecords * 4;
+        this.keyOf = keyOf;
+        this.writer = writer;
+        this.afterWrite = afterWrite;
+    }
+
+    void record(String record) {
+        String key = keyOf.apply(record);
+        boolean full;
+        synchronized (lock) {
+            LinkedHashMap<String, String> group = groups.isEmpty() ? null : groups.get(groups.size() - 1);
+            String waiting = group == null ? null : group.get(key);
+            if (group == null || waiting != null && !type(waiting).equals(type(record))) {
+                group = new LinkedHashMap<>();
+                groups.add(group);
+            }
+            if (group.put(key, record) == null) {
+                if (pending++ == 0) {
+                    oldestNanos = System.nanoTime();
+                }
+            }
+            full = pending >= maxPending;
+            if (pending >= batchRecords) {
+                lock.notifyAll();
+            }
+            if (thread == null && intervalNanos > 0) {
+                thread = new Thread(this::run, "flusher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        try {
+            if (intervalNanos == 0) {
+                write();
+                afterWrite.run();
+            } else if (full) {
+                write();
+            }
+        } catch (RuntimeException e) {
+            // Still waiting; the next flush reports it if it fails again
+            System.out.println("Error writing edits: " + e.getMessage());
+        }
+    }
+
+    // Returns once every record recorded before the call has been written, or throws what the
+    // writer threw with the records still waiting
+    void flush() {
+        write();
+    }
+
+    int pending() {
+        synchronized (lock) {
+            return pending;
+        }
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                synchronized (lock) {
+                    while (pending == 0) {
+                        lock.wait();
+                    }
+                    long wait;
+                    while (pending > 0 && pending < batchRecords
+                            && (wait = oldestNanos + intervalNanos - System.nanoTime()) > 0) {
+                        lock.wait(wait / 1000000, (int) (wait % 1000000));
+                    }
+                }
+                try {
+                    write();
+                    afterWrite.run();
+                } catch (RuntimeException e) {
+                    System.out.println("Error writing edits: " + e.getMessage());
+                    Thread.sleep(Math.max(intervalNanos / 1000000, RETRY_MILLIS));
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void write() {
+        synchronized (writing) {
+            List<LinkedHashMap<String, String>> batch;
+            long batchNanos;
+            synchronized (lock) {
+                if (pending == 0) {
+                    return;
+                }
+                batch = groups;
+                batchNanos = oldestNanos;
+                groups = new ArrayList<>();
+                pending = 0;
+            }
+            List<String> records = new ArrayList<>();
+            for (LinkedHashMap<String, String> group : batch) {
+                records.addAll(group.values());
+            }
+            try {
+                writer.accept(records);
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    batch.addAll(groups);
+                    groups = batch;
+                    pending += records.size();
+                    oldestNanos = batchNanos;
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static String type(String record) {
+        int comma = record.indexOf(',');
+        return comma < 0 ? record : record.substring(0, comma);
+    }
+}
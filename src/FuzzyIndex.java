@@ -0,0 +1,415 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trigram index over the names, email, address, course and phone number of every student, for
+// searches that forgive typos and partial input. Each word is folded to lower case and cut into
+// overlapping three-character grams ("cruz" gives "  c", " cr", "cru", "ruz", "uz "), and each
+// gram keeps the slots of the students that have it in ascending order. A student's score is
+// the share of the query's grams it has.
+//
+// A search first walks the students having every gram, in slot order, and stops once it has
+// enough; that answers ordinary queries without looking at the rest. Otherwise grams that most
+// students have are set aside and the rest are walked together in slot order, with the rarest
+// lists proposing candidates and the commoner ones only checked for them (MaxScore), so the
+// walk speeds up as the best matches so far improve.
+//
+// Removed students leave a tombstone in their slot and their stale postings are skipped until
+// the dead slots outnumber the live ones, when the slots are renumbered in place. Searches share
+// a read lock and changes, already serialized by StudentRepository, take the write lock.
+class FuzzyIndex {
+    // A match must share at least this share of the query's grams
+    private static final double MIN_SCORE = 0.4;
+    // Grams in more than this share of the students are not used for ranking
+    private static final double COMMON_GRAM_SHARE = 0.25;
+    private static final char PAD = ' ';
+
+    static final class Match {
+        final Student student;
+        final double score;
+
+        Match(Student student, double score) {
+            this.student = student;
+            this.score = score;
+        }
+    }
+
+    private static final class Postings {
+        int[] slots = new int[4];
+        // Slots held, tombstones included, and how many of them are live
+        int size;
+        int live;
+
+        void add(int slot) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+            live++;
+        }
+
+        // Position of the first slot at or after the given one, searching from position from
+        int seek(int from, int slot) {
+            int step = 1;
+            int high = from;
+            while (high < size && slots[high] < slot) {
+                from = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(slots, from, Math.min(high + 1, size), slot);
+            return found >= 0 ? found : -found - 1;
+        }
+    }
+
+    // Open-addressing table from gram to postings; a gram is never 0, which marks a free cell
+    private long[] gramKeys = new long[1 << 12];
+    private Postings[] gramLists = new Postings[1 << 12];
+    private int gramCount;
+    private Student[] students = new Student[1024];
+    private int slots;
+    private int live;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    static FuzzyIndex of(Collection<Student> students) {
+        FuzzyIndex index = new FuzzyIndex();
+        for (Student student : students) {
+            index.add(student);
+        }
+        return index;
+    }
+
+    void add(Student student) {
+        long[] grams = grams(student);
+        lock.writeLock().lock();
+        try {
+            insert(student, grams);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Student student) {
+        long[] grams = grams(student);
+        lock.writeLock().lock();
+        try {
+            delete(student, grams);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Swaps a changed copy in for the student in one step, so a search finds one or the other
+    void replace(Student student, Student copy) {
+        long[] removed = grams(student);
+        long[] added = grams(copy);
+        lock.writeLock().lock();
+        try {
+            delete(student, removed);
+            insert(copy, added);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(Student student, long[] grams) {
+        if (slots == students.length) {
+            students = Arrays.copyOf(students, slots * 2);
+        }
+        int slot = slots++;
+        students[slot] = student;
+        student.searchSlot = slot;
+        live++;
+        for (long gram : grams) {
+            postingsOf(gram, true).add(slot);
+        }
+    }
+
+    private void delete(Student student, long[] grams) {
+        int slot = student.searchSlot;
+        if (slot < 0 || slot >= slots || students[slot] != student) {
+            return;
+        }
+        for (long gram : grams) {
+            postingsOf(gram, false).live--;
+        }
+        students[slot] = null;
+        student.searchSlot = -1;
+        live--;
+        if (slots - live > Math.max(live, 1024)) {
+            compact();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return live;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The best matches, highest score first and then in slot order
+    List<Match> search(String text, int limit) {
+        long[] grams = grams(text);
+        List<Match> matches = new ArrayList<>();
+        if (grams.length == 0 || limit < 1) {
+            return matches;
+        }
+        lock.readLock().lock();
+        try {
+            List<Postings> lists = new ArrayList<>();
+            for (long gram : grams) {
+                Postings list = postingsOf(gram, false);
+                if (list != null && list.live > 0) {
+                    lists.add(list);
+                }
+            }
+            lists.sort((a, b) -> Integer.compare(a.live, b.live));
+            if (lists.size() == grams.length) {
+                everyGram(lists, limit, matches);
+                if (matches.size() == limit) {
+                    return matches;
+                }
+                matches.clear();
+            }
+            // Grams most students have say little about who is meant, like stop words, so they
+            // are left out of the ranking; the rarest is kept if every one is that common
+            int kept = lists.size();
+            while (kept > 1 && lists.get(kept - 1).live > live * COMMON_GRAM_SHARE) {
+                kept--;
+            }
+            int gramCount = grams.length - (lists.size() - kept);
+            int minShared = Math.max(1, (int) Math.ceil(gramCount * MIN_SCORE));
+            if (kept >= minShared) {
+                ranked(lists.subList(0, kept), gramCount, minShared, limit, matches);
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Students with every gram, walking the rarest list and seeking through the others
+    private void everyGram(List<Postings> lists, int limit, List<Match> matches) {
+        Postings rarest = lists.get(0);
+        int[] positions = new int[lists.size()];
+        next: for (int i = 0; i < rarest.size && matches.size() < limit; i++) {
+            int slot = rarest.slots[i];
+            if (students[slot] == null) {
+                continue;
+            }
+            for (int l = 1; l < lists.size(); l++) {
+                Postings list = lists.get(l);
+                positions[l] = list.seek(positions[l], slot);
+                if (positions[l] == list.size) {
+                    return;
+                }
+                if (list.slots[positions[l]] != slot) {
+                    continue next;
+                }
+            }
+            matches.add(new Match(students[slot], 1));
+        }
+    }
+
+    // Walks the lists together in slot order, keeping the best matches so far. A student missing
+    // from all of the rarest lists cannot beat the current limit-th best, so only those lists
+    // propose candidates, and fewer of them as the best improve; the others are only checked for
+    // the candidates. Once the best all share every gram, nothing later can displace them.
+    private void ranked(List<Postings> lists, int gramCount, int minShared, int limit, List<Match> matches) {
+        int count = lists.size();
+        int[] positions = new int[count];
+        // Lowest score, then latest slot, at the head, to be dropped first
+        PriorityQueue<int[]> best = new PriorityQueue<>(
+                (a, b) -> a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(b[0], a[0]));
+        while (true) {
+            // Later slots lose ties, so a newcomer must beat the limit-th best outright
+            int need = best.size() == limit ? best.peek()[1] + 1 : minShared;
+            int proposing = count - need + 1;
+            if (proposing <= 0) {
+                break;
+            }
+            int slot = Integer.MAX_VALUE;
+            for (int l = 0; l < proposing; l++) {
+                Postings list = lists.get(l);
+                if (positions[l] < list.size) {
+                    slot = Math.min(slot, list.slots[positions[l]]);
+                }
+            }
+            if (slot == Integer.MAX_VALUE) {
+                break;
+            }
+            int shared = 0;
+            for (int l = 0; l < proposing; l++) {
+                Postings list = lists.get(l);
+                if (positions[l] < list.size && list.slots[positions[l]] == slot) {
+                    positions[l]++;
+                    shared++;
+                }
+            }
+            for (int l = proposing; l < count && shared + count - l >= need; l++) {
+                Postings list = lists.get(l);
+                positions[l] = list.seek(positions[l], slot);
+                if (positions[l] < list.size && list.slots[positions[l]] == slot) {
+                    shared++;
+                }
+            }
+            if (shared >= need && students[slot] != null) {
+                best.add(new int[] { slot, shared });
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        while (!best.isEmpty()) {
+            int[] match = best.poll();
+            matches.add(new Match(students[match[0]], match[1] / (double) gramCount));
+        }
+        Collections.reverse(matches);
+    }
+
+    // Renumbers the live students in slot order and drops the dead slots from every list
+    private void compact() {
+        int[] renumbered = new int[slots];
+        int next = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (students[slot] == null) {
+                renumbered[slot] = -1;
+            } else {
+                renumbered[slot] = next;
+                students[next] = students[slot];
+                students[next].searchSlot = next;
+                next++;
+            }
+        }
+        Arrays.fill(students, next, slots, null);
+        slots = next;
+        for (Postings list : gramLists) {
+            if (list == null) {
+                continue;
+            }
+            int size = 0;
+            for (int i = 0; i < list.size; i++) {
+                int slot = renumbered[list.slots[i]];
+                if (slot >= 0) {
+                    list.slots[size++] = slot;
+                }
+            }
+            list.size = size;
+        }
+    }
+
+    // The gram's list, created if asked for; emptied lists stay in the table
+    private Postings postingsOf(long gram, boolean create) {
+        int at = cell(gram);
+        if (gramKeys[at] == gram) {
+            return gramLists[at];
+        }
+        if (!create) {
+            return null;
+        }
+        if ((gramCount + 1) * 2 > gramKeys.length) {
+            grow();
+            at = cell(gram);
+        }
+        gramKeys[at] = gram;
+        gramLists[at] = new Postings();
+        gramCount++;
+        return gramLists[at];
+    }
+
+    // The cell holding the gram, or the free cell where it would go
+    private int cell(long gram) {
+        int mask = gramKeys.length - 1;
+        int at = (int) (gram * 0x9E3779B97F4A7C15L >>> 40) & mask;
+        while (gramKeys[at] != 0 && gramKeys[at] != gram) {
+            at = (at + 1) & mask;
+        }
+        return at;
+    }
+
+    private void grow() {
+        long[] oldKeys = gramKeys;
+        Postings[] oldLists = gramLists;
+        gramKeys = new long[oldKeys.length * 2];
+        gramLists = new Postings[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int at = cell(oldKeys[i]);
+                gramKeys[at] = oldKeys[i];
+                gramLists[at] = oldLists[i];
+            }
+        }
+    }
+
+    private static long[] grams(Student student) {
+        GramBuffer buffer = new GramBuffer();
+        buffer.addText(student.getLastName());
+        buffer.addText(student.getFirstName());
+        buffer.addText(student.getMiddleName());
+        buffer.addText(student.getEmailAddress());
+        buffer.addText(student.getAddress());
+        buffer.addText(student.getCourse());
+        buffer.addText(student.getPhoneNumber());
+        return buffer.distinct();
+    }
+
+    static long[] grams(String text) {
+        GramBuffer buffer = new GramBuffer();
+        buffer.addText(text);
+        return buffer.distinct();
+    }
+
+    // Collects the grams of each run of letters and digits, two pads before and one after
+    private static final class GramBuffer {
+        long[] grams = new long[128];
+        int size;
+
+        void addText(String text) {
+            if (text == null) {
+                return;
+            }
+            char first = PAD;
+            char second = PAD;
+            boolean inWord = false;
+            for (int i = 0; i <= text.length(); i++) {
+                char c = i < text.length() ? Character.toLowerCase(text.charAt(i)) : PAD;
+                if (Character.isLetterOrDigit(c)) {
+                    add(first, second, c);
+                    first = second;
+                    second = c;
+                    inWord = true;
+                } else if (inWord) {
+                    add(first, second, PAD);
+                    first = PAD;
+                    second = PAD;
+                    inWord = false;
+                }
+            }
+        }
+
+        private void add(char a, char b, char c) {
+            if (size == grams.length) {
+                grams = Arrays.copyOf(grams, size * 2);
+            }
+            grams[size++] = (long) a << 32 | (long) b << 16 | c;
+        }
+
+        long[] distinct() {
+            Arrays.sort(grams, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || grams[i] != grams[unique - 1]) {
+                    grams[unique++] = grams[i];
+                }
+            }
+            return Arrays.copyOf(grams, unique);
+        }
+    }
+}
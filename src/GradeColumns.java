@@ -0,0 +1,173 @@
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// Columnar storage for every grade in the system. Each graded subject owns one slot, and the
+// slot's prelims, midterms, finals and final rating live in parallel primitive arrays instead
+// of a Grade object per subject. Slots of removed subjects are recycled through a free list.
+//
+// Reads take no lock. The arrays are published together through one volatile reference that is
+// only replaced when they grow, so the statistics and rankings passes and the query server read
+// side by side. Writers lock, so a write cannot land in arrays a concurrent grow has already
+// copied, and republish the reference afterwards so a reader that sees it sees the write too.
+//
+// A subject holds a handle, the slot with the generation it was allocated in. Releasing a slot
+// moves its generation on, so a reader that raced the release and read the slot after it was
+// handed to another subject finds out with isCurrent and does not use what it read.
+class GradeColumns {
+    static final GradeColumns INSTANCE = new GradeColumns();
+    private static final int GENERATION_MASK = 0x7fffffff;
+
+    interface SlotVisitor {
+        void visit(int slot, int prelims, int midterms, int finals, double finalRating);
+    }
+
+    private static final class Columns {
+        final int[] prelims;
+        final int[] midterms;
+        final int[] finals;
+        final double[] finalRatings;
+        final boolean[] used;
+        final int[] generations;
+
+        Columns(int capacity) {
+            this(new int[capacity], new int[capacity], new int[capacity], new double[capacity], new boolean[capacity],
+                    new int[capacity]);
+        }
+
+        Columns(int[] prelims, int[] midterms, int[] finals, double[] finalRatings, boolean[] used,
+                int[] generations) {
+            this.prelims = prelims;
+            this.midterms = midterms;
+            this.finals = finals;
+            this.finalRatings = finalRatings;
+            this.used = used;
+            this.generations = generations;
+        }
+    }
+
+    private volatile Columns columns = new Columns(1024);
+    private volatile int highWater;
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+
+    // Returns the handle of a new slot holding the given scores
+    public synchronized long allocate(int prelims, int midterms, int finals, double finalRating) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (highWater == columns.used.length) {
+                grow(columns.used.length * 2);
+            }
+            slot = highWater;
+        }
+        Columns c = columns;
+        c.used[slot] = true;
+        c.prelims[slot] = prelims;
+        c.midterms[slot] = midterms;
+        c.finals[slot] = finals;
+        c.finalRatings[slot] = finalRating;
+        if (slot == highWater) {
+            highWater = slot + 1;
+        }
+        columns = c;
+        return handle(slot, c.generations[slot]);
+    }
+
+    // Overwrites the scores of a slot the caller owns
+    public synchronized void set(long handle, int prelims, int midterms, int finals, double finalRating) {
+        Columns c = columns;
+        int slot = slot(handle);
+        c.prelims[slot] = prelims;
+        c.midterms[slot] = midterms;
+        c.finals[slot] = finals;
+        c.finalRatings[slot] = finalRating;
+        columns = c;
+    }
+
+    public synchronized void release(long handle) {
+        Columns c = columns;
+        int slot = slot(handle);
+        if (!c.used[slot] || !isCurrent(handle)) {
+            return;
+        }
+        c.used[slot] = false;
+        c.generations[slot]++;
+        // The new generation must be visible before the scores of the slot's next owner
+        VarHandle.storeStoreFence();
+        columns = c;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // Drops every grade; only for reloading the whole data set
+    public synchronized void clear() {
+        Columns c = columns;
+        for (int slot = 0; slot < highWater; slot++) {
+            if (c.used[slot]) {
+                c.used[slot] = false;
+                c.generations[slot]++;
+            }
+        }
+        columns = c;
+        highWater = 0;
+        freeCount = 0;
+    }
+
+    public synchronized int size() {
+        return highWater - freeCount;
+    }
+
+    static int slot(long handle) {
+        return (int) handle;
+    }
+
+    private static long handle(int slot, int generation) {
+        return (long) (generation & GENERATION_MASK) << 32 | slot;
+    }
+
+    // Whether the slot still belongs to the handle. Checked after reading the scores: a false
+    // answer means they may be another subject's.
+    public boolean isCurrent(long handle) {
+        VarHandle.loadLoadFence();
+        int slot = slot(handle);
+        return (columns.generations[slot] & GENERATION_MASK) == (int) (handle >>> 32);
+    }
+
+    public int getPrelims(long handle) {
+        return columns.prelims[slot(handle)];
+    }
+
+    public int getMidterms(long handle) {
+        return columns.midterms[slot(handle)];
+    }
+
+    public int getFinals(long handle) {
+        return columns.finals[slot(handle)];
+    }
+
+    public double getFinalRating(long handle) {
+        return columns.finalRatings[slot(handle)];
+    }
+
+    // Sequential pass over every live grade, straight down the arrays as they were when it started
+    public void forEach(SlotVisitor visitor) {
+        int end = highWater;
+        Columns c = columns;
+        for (int slot = 0; slot < end; slot++) {
+            if (c.used[slot]) {
+                visitor.visit(slot, c.prelims[slot], c.midterms[slot], c.finals[slot], c.finalRatings[slot]);
+            }
+        }
+    }
+
+    // Called holding the lock; readers keep the old arrays until the new ones are published
+    private void grow(int capacity) {
+        Columns c = columns;
+        columns = new Columns(Arrays.copyOf(c.prelims, capacity), Arrays.copyOf(c.midterms, capacity),
+                Arrays.copyOf(c.finals, capacity), Arrays.copyOf(c.finalRatings, capacity),
+                Arrays.copyOf(c.used, capacity), Arrays.copyOf(c.generations, capacity));
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Final rating statistics for every subject name, course number, instructor and student course.
+// Each group keeps a histogram of ratings in hundredths of a point, so the mean, median,
+// percentiles, pass rate and distribution are exact and a grade can be taken back out as
+// easily as it was put in. The whole set is built in one parallel pass over the students, all
+// recording into the same groups, and then kept current by StudentRepository, which takes the
+// old version of a student's grades out and puts the new one in.
+class GradeStatistics {
+    static final double PASSING_RATING = 75;
+    // Lower bounds of the distribution bands, in points
+    static final int[] BANDS = { 0, 60, 70, 80, 90 };
+    static final String[] BAND_LABELS = { "Below 60", "60-69", "70-79", "80-89", "90-100" };
+    private static final int SCALE = 100;
+    private static final int MAX_RATING = 100 * SCALE;
+
+    enum Dimension {
+        SUBJECT,
+        COURSE_NUMBER,
+        INSTRUCTOR,
+        COURSE;
+
+        String keyOf(Student student, Subject subject) {
+            switch (this) {
+                case SUBJECT:
+                    return subject.getName();
+                case COURSE_NUMBER:
+                    return subject.getCourseNumber();
+                case INSTRUCTOR:
+                    return subject.getInstructorName();
+                default:
+                    return student.getCourse();
+            }
+        }
+    }
+
+    // A read of one group's histogram. Ratings are in points; with no grades every value is 0.
+    static final class Summary {
+        final int count;
+        final double mean;
+        final double median;
+        final double p25;
+        final double p75;
+        final double p90;
+        final double min;
+        final double max;
+        final double passRate;
+        final int[] bands;
+
+        // ratings holds the distinct ratings in ascending order and counts how often each occurs
+        private Summary(int[] ratings, int[] counts, int count, long sum) {
+            this.count = count;
+            mean = count == 0 ? 0 : sum / (double) count / SCALE;
+            median = count % 2 == 1 ? valueAt(ratings, counts, count / 2 + 1)
+                    : (valueAt(ratings, counts, count / 2) + valueAt(ratings, counts, count / 2 + 1)) / 2;
+            p25 = percentile(ratings, counts, count, 25);
+            p75 = percentile(ratings, counts, count, 75);
+            p90 = percentile(ratings, counts, count, 90);
+            min = valueAt(ratings, counts, 1);
+            max = valueAt(ratings, counts, count);
+            bands = new int[BANDS.length];
+            int passing = 0;
+            for (int i = 0; i < ratings.length; i++) {
+                int rating = ratings[i];
+                if (rating >= PASSING_RATING * SCALE) {
+                    passing += counts[i];
+                }
+                int band = BANDS.length - 1;
+                while (rating < BANDS[band] * SCALE) {
+                    band--;
+                }
+                bands[band] += counts[i];
+            }
+            passRate = count == 0 ? 0 : passing / (double) count;
+        }
+
+        // Nearest-rank percentile
+        private static double percentile(int[] ratings, int[] counts, int count, int percent) {
+            return valueAt(ratings, counts, (int) Math.ceil(count * percent / 100.0));
+        }
+
+        // The rating with the given rank, counting from 1 in ascending order
+        private static double valueAt(int[] ratings, int[] counts, int rank) {
+            if (rank < 1) {
+                return 0;
+            }
+            int seen = 0;
+            for (int i = 0; i < ratings.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return ratings[i] / (double) SCALE;
+                }
+            }
+            return 0;
+        }
+    }
+
+    // Histogram of one group, kept sparse: the distinct ratings recorded, in ascending order, each
+    // with its count. A group seldom sees more than a few hundred distinct ratings, where a dense
+    // array over every hundredth of a point would take 40 KB per group. Ratings outside 0-100,
+    // which the console does not reject, are counted at the nearest end; the mean still uses
+    // their true value.
+    static final class Distribution {
+        private int[] ratings = new int[8];
+        private int[] counts = new int[8];
+        private int size;
+        private int count;
+        private long sum;
+
+        synchronized void record(int hundredths, int delta) {
+            int rating = Math.max(0, Math.min(MAX_RATING, hundredths));
+            int at = Arrays.binarySearch(ratings, 0, size, rating);
+            if (at < 0) {
+                at = -at - 1;
+                if (size == ratings.length) {
+                    ratings = Arrays.copyOf(ratings, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                }
+                System.arraycopy(ratings, at, ratings, at + 1, size - at);
+                System.arraycopy(counts, at, counts, at + 1, size - at);
+                ratings[at] = rating;
+                counts[at] = 0;
+                size++;
+            }
+            counts[at] += delta;
+            if (counts[at] == 0) {
+                System.arraycopy(ratings, at + 1, ratings, at, size - at - 1);
+                System.arraycopy(counts, at + 1, counts, at, size - at - 1);
+                size--;
+            }
+            count += delta;
+            sum += (long) hundredths * delta;
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        synchronized Summary summary() {
+            return new Summary(Arrays.copyOf(ratings, size), Arrays.copyOf(counts, size), count, sum);
+        }
+    }
+
+    private final Distribution overall = new Distribution();
+    private final Map<Dimension, ConcurrentHashMap<String, Distribution>> groups = new EnumMap<>(Dimension.class);
+
+    GradeStatistics() {
+        for (Dimension dimension : Dimension.values()) {
+            groups.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    // One parallel pass over the students. The workers record straight into one shared set, whose
+    // groups are concurrent maps of synchronized histograms, instead of each filling a copy of
+    // every group to be merged at the end.
+    static GradeStatistics of(Collection<Student> students) {
+        GradeStatistics statistics = new GradeStatistics();
+        students.parallelStream().forEach(statistics::add);
+        return statistics;
+    }
+
+    void add(Student student) {
+        record(student, 1);
+    }
+
+    void remove(Student student) {
+        record(student, -1);
+    }
+
+    Summary overall() {
+        return overall.summary();
+    }
+
+    Summary summary(Dimension dimension, String key) {
+        Distribution distribution = groups.get(dimension).get(key);
+        return distribution == null ? new Distribution().summary() : distribution.summary();
+    }
+
+    // Every group of a dimension, sorted by key
+    Map<String, Summary> summaries(Dimension dimension) {
+        Map<String, Summary> summaries = new TreeMap<>();
+        for (Map.Entry<String, Distribution> group : groups.get(dimension).entrySet()) {
+            Summary summary = group.getValue().summary();
+            if (summary.count > 0) {
+                summaries.put(group.getKey(), summary);
+            }
+        }
+        return summaries;
+    }
+
+    private void record(Student student, int delta) {
+        for (Subject subject : student.getSubjects()) {
+            Grade grade = subject.getGrade();
+            if (grade == null) {
+                continue;
+            }
+            int hundredths = (int) Math.round(grade.getFinalRating() * SCALE);
+            overall.record(hundredths, delta);
+            for (Map.Entry<Dimension, ConcurrentHashMap<String, Distribution>> dimension : groups.entrySet()) {
+                String key = dimension.getKey().keyOf(student, subject);
+                if (key == null) {
+                    continue;
+                }
+                Distribution distribution = dimension.getValue().computeIfAbsent(key, k -> new Distribution());
+                distribution.record(hundredths, delta);
+                if (distribution.count() == 0) {
+                    dimension.getValue().remove(key, distribution);
+                }
+            }
+        }
+    }
+}
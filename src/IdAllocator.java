@@ -0,0 +1,117 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+// Hands out unused 7-digit student IDs. One bit per ID from 1000000 to 9999999 says whether it
+// is taken, 1.1 MB in all. A new ID starts from a random word of the bitmap and takes the first
+// clear bit from there with a compare-and-set, so it costs the same at any occupancy short of
+// nearly full, never looks at the students themselves, and two threads can never get the same
+// ID. IDs of any other shape are left to the repository's ID index.
+class IdAllocator {
+    static final int FIRST_ID = 1000000;
+    static final int ID_COUNT = 9000000;
+    private static final int WORDS = (ID_COUNT + 63) / 64;
+
+    private final AtomicLongArray taken = new AtomicLongArray(WORDS);
+    private final AtomicInteger used = new AtomicInteger();
+
+    // Takes an unused ID; throws IllegalStateException once every ID is taken
+    String allocate() {
+        int start = ThreadLocalRandom.current().nextInt(WORDS);
+        for (int i = 0; i < WORDS; i++) {
+            int word = start + i < WORDS ? start + i : start + i - WORDS;
+            long bits;
+            while ((bits = taken.get(word)) != -1L) {
+                int bit = Long.numberOfTrailingZeros(~bits);
+                int index = word * 64 + bit;
+                if (index >= ID_COUNT) {
+                    break;
+                }
+                if (taken.compareAndSet(word, bits, bits | 1L << bit)) {
+                    used.incrementAndGet();
+                    return Integer.toString(FIRST_ID + index);
+                }
+            }
+        }
+        throw new IllegalStateException("Every student ID is taken");
+    }
+
+    // Marks an ID as taken; returns false if it already was or is not a 7-digit ID
+    boolean take(String id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return false;
+        }
+        long mask = 1L << index;
+        long bits;
+        do {
+            bits = taken.get(index >>> 6);
+            if ((bits & mask) != 0) {
+                return false;
+            }
+        } while (!taken.compareAndSet(index >>> 6, bits, bits | mask));
+        used.incrementAndGet();
+        return true;
+    }
+
+    void release(String id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return;
+        }
+        long mask = 1L << index;
+        long bits;
+        do {
+            bits = taken.get(index >>> 6);
+            if ((bits & mask) == 0) {
+                return;
+            }
+        } while (!taken.compareAndSet(index >>> 6, bits, bits & ~mask));
+        used.decrementAndGet();
+    }
+
+    boolean isTaken(String id) {
+        int index = indexOf(id);
+        return index >= 0 && (taken.get(index >>> 6) & 1L << index) != 0;
+    }
+
+    int used() {
+        return used.get();
+    }
+
+    // Every taken ID in ascending order, a word of the bitmap at a time
+    void forEachTaken(Consumer<String> action) {
+        for (int word = 0; word < WORDS; word++) {
+            long bits = taken.get(word);
+            while (bits != 0) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                action.accept(Integer.toString(FIRST_ID + word * 64 + bit));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    void clear() {
+        for (int word = 0; word < WORDS; word++) {
+            taken.set(word, 0);
+        }
+        used.set(0);
+    }
+
+    // Bit index of a 7-digit ID, or -1 for anything else
+    private static int indexOf(String id) {
+        if (id == null || id.length() != 7 || id.charAt(0) == '0') {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < 7; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value - FIRST_ID;
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Write-ahead log for every edit made since the CSV files were last checkpointed.
+// Each record is one line "<crc32>|<type>,<fields>". Records are buffered by append and made
+// durable by commit, which writes and fsyncs everything pending in one go, so concurrent or
+// consecutive edits share a single fsync (group commit).
+class Journal {
+    private final Path file;
+    private FileChannel channel;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final Object commitLock = new Object();
+    private long appendedSeq;
+    private volatile long durableSeq;
+    private int records;
+    private int pendingRecords;
+    // Length of the file up to its last whole record, once it has been opened
+    private long length = -1;
+
+    public Journal(String fileName) {
+        this.file = Paths.get(fileName);
+    }
+
+    public synchronized long append(String record) {
+        byte[] payload = record.getBytes(StandardCharsets.UTF_8);
+        byte[] checksum = (Long.toHexString(crc(payload)) + "|").getBytes(StandardCharsets.UTF_8);
+        pending.write(checksum, 0, checksum.length);
+        pending.write(payload, 0, payload.length);
+        pending.write('\n');
+        records++;
+        pendingRecords++;
+        return ++appendedSeq;
+    }
+
+    public void commit() throws IOException {
+        long seq;
+        synchronized (this) {
+            seq = appendedSeq;
+        }
+        commit(seq);
+    }
+
+    // Returns once the record with the given sequence number is on disk. Whoever gets the
+    // commit lock first flushes every record appended so far; later callers find their
+    // record already durable and return without another fsync. If the write fails the batch
+    // goes back in front of anything appended since and the file is cut back to its last whole
+    // record, so a later commit writes it again without leaving a torn line for replay to stop at.
+    public void commit(long seq) throws IOException {
+        synchronized (commitLock) {
+            if (durableSeq >= seq) {
+                return;
+            }
+            byte[] batch;
+            int batchRecords;
+            long batchSeq;
+            synchronized (this) {
+                batch = pending.toByteArray();
+                batchRecords = pendingRecords;
+                pending.reset();
+                pendingRecords = 0;
+                batchSeq = appendedSeq;
+            }
+            try {
+                FileChannel out = channel();
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    byte[] later = pending.toByteArray();
+                    pending.reset();
+                    pending.write(batch, 0, batch.length);
+                    pending.write(later, 0, later.length);
+                    pendingRecords += batchRecords;
+                }
+                discardPartialWrite();
+                throw e;
+            }
+            length += batch.length;
+            durableSeq = batchSeq;
+        }
+    }
+
+    // Drops the records appended since the last commit, for a caller that will append them again
+    public synchronized void discard() {
+        pending.reset();
+        records -= pendingRecords;
+        pendingRecords = 0;
+    }
+
+    public synchronized int size() {
+        return records;
+    }
+
+    public synchronized boolean isEmpty() {
+        return records == 0;
+    }
+
+    // Drops every record once the CSV files have been checkpointed
+    public void reset() throws IOException {
+        synchronized (commitLock) {
+            synchronized (this) {
+                pending.reset();
+                records = 0;
+                pendingRecords = 0;
+                durableSeq = appendedSeq;
+            }
+            channel().truncate(0);
+            channel().force(true);
+            length = 0;
+        }
+    }
+
+    // Feeds each intact record to the consumer in order. Replay stops at the first torn or
+    // corrupt record, which can only be the tail of a write cut short by a crash, and cuts it off
+    // unless repair is false, for a reader that must leave the file to the process writing it.
+    public void replay(Consumer<String[]> apply, boolean repair) throws IOException {
+        synchronized (commitLock) {
+            if (!Files.exists(file)) {
+                return;
+            }
+            byte[] bytes = Files.readAllBytes(file);
+            int start = 0;
+            int replayed = 0;
+            while (start < bytes.length) {
+                int end = start;
+                while (end < bytes.length && bytes[end] != '\n') {
+                    end++;
+                }
+                String record = end < bytes.length ? verify(bytes, start, end) : null;
+                if (record == null) {
+                    System.out.println("Ignoring incomplete journal entry at byte " + start + ".");
+                    if (!repair) {
+                        break;
+                    }
+                    channel().truncate(start);
+                    channel().force(true);
+                    length = start;
+                    break;
+                }
+                apply.accept(record.split(",", -1));
+                replayed++;
+                start = end + 1;
+            }
+            synchronized (this) {
+                records = replayed;
+            }
+        }
+    }
+
+    private static String verify(byte[] bytes, int start, int end) {
+        int separator = start;
+        while (separator < end && bytes[separator] != '|') {
+            separator++;
+        }
+        if (separator == end) {
+            return null;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, separator + 1, end - separator - 1);
+        String expected = new String(bytes, start, separator - start, StandardCharsets.UTF_8);
+        if (!expected.equals(Long.toHexString(crc32.getValue()))) {
+            return null;
+        }
+        return new String(bytes, separator + 1, end - separator - 1, StandardCharsets.UTF_8);
+    }
+
+    private static long crc(byte[] payload) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload);
+        return crc32.getValue();
+    }
+
+    private void discardPartialWrite() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.truncate(length);
+            channel.position(length);
+        } catch (IOException e) {
+            // Reopened and cut back before the next write
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+            channel = null;
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (length >= 0 && channel.size() > length) {
+                channel.truncate(length);
+            }
+            channel.position(channel.size());
+            length = channel.size();
+        }
+        return channel;
+    }
+}
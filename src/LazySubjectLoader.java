@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Lazy mode (-Dsdms.lazy=true). Instead of parsing every subject and grade at startup, one scan
+// of subjects.csv and grades.csv notes where each student's lines are, and a student's
+// subjects and grades are parsed the first time anything asks for them. The scan runs over
+// chunks of the files in parallel and only reads the student ID of each line. A student's
+// lines are usually next to each other, so each student keeps the first run of lines as an
+// offset and a count; runs found elsewhere are kept as extra offset and count pairs.
+//
+// Loads lock only the student being loaded and borrow a pair of readers from a pool of at most
+// one pair per processor, so the first look at different students' subjects proceeds in
+// parallel however many threads ask. Closing waits for the loads in progress.
+class LazySubjectLoader implements AutoCloseable {
+    // Where one student's lines are in each file
+    static final class Pending {
+        private final LazySubjectLoader loader;
+        private final Lines subjects = new Lines();
+        private final Lines grades = new Lines();
+
+        Pending(LazySubjectLoader loader) {
+            this.loader = loader;
+        }
+
+        void load(Student student) {
+            loader.load(student, this);
+        }
+    }
+
+    private static final class Lines {
+        long start;
+        long end;
+        int count;
+        // Further runs as offset and count pairs, after the number of pairs
+        long[] more;
+
+        void add(long runStart, long runEnd, int runCount) {
+            if (count == 0) {
+                start = runStart;
+                end = runEnd;
+                count = runCount;
+            } else if (more == null && end == runStart) {
+                end = runEnd;
+                count += runCount;
+            } else {
+                if (more == null) {
+                    more = new long[5];
+                } else if (2 * more[0] + 1 == more.length) {
+                    more = Arrays.copyOf(more, more.length * 2 - 1);
+                }
+                int pair = (int) more[0]++;
+                more[2 * pair + 1] = runStart;
+                more[2 * pair + 2] = runCount;
+            }
+        }
+    }
+
+    // Consecutive lines of one student found while scanning a chunk
+    private static final class Run {
+        final String id;
+        final byte[] idBytes;
+        final long start;
+        long end;
+        int count = 1;
+
+        Run(String id, long start, long end) {
+            this.id = id;
+            this.idBytes = id.getBytes(StandardCharsets.UTF_8);
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private final String subjectFile;
+    private final String gradeFile;
+    // Gets each grade line that has no loaded student or subject to take it
+    private final Consumer<String> unmatchedGrades;
+    private final int maxReaders = Runtime.getRuntime().availableProcessors();
+    // Subjects and grades reader pairs not in use; guarded by itself along with opened
+    private final ArrayDeque<MappedCsvReader[]> idle = new ArrayDeque<>();
+    // Every reader opened, for close
+    private final List<MappedCsvReader> opened = new ArrayList<>();
+    // Loads share it and close takes it alone
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    private LazySubjectLoader(String subjectFile, String gradeFile, Consumer<String> unmatchedGrades) {
+        this.subjectFile = subjectFile;
+        this.gradeFile = gradeFile;
+        this.unmatchedGrades = unmatchedGrades;
+    }
+
+    // Scans both files and leaves a Pending on every student that has lines in them. Bad lines
+    // are reported now, as the eager loader does. Grade lines of students that were not loaded go
+    // to unmatchedGrades now, and those naming a subject the student lacks when it is loaded.
+    static LazySubjectLoader open(String subjectFile, String gradeFile, Map<String, Student> studentsById,
+            ParallelLoader parallelLoader, Consumer<String> unmatchedGrades) throws IOException {
+        LazySubjectLoader loader = new LazySubjectLoader(subjectFile, gradeFile, unmatchedGrades);
+        try {
+            for (Run run : runs(parallelLoader, subjectFile, 4, "Invalid line in subjects file: ")) {
+                Pending pending = loader.pendingOf(studentsById.get(run.id));
+                if (pending != null) {
+                    pending.subjects.add(run.start, run.end, run.count);
+                }
+            }
+            try (MappedCsvReader grades = new MappedCsvReader(gradeFile)) {
+                for (Run run : runs(parallelLoader, gradeFile, 6, "Invalid line format in grades.csv: ")) {
+                    Pending pending = loader.pendingOf(studentsById.get(run.id.trim()));
+                    if (pending != null) {
+                        pending.grades.add(run.start, run.end, run.count);
+                    } else {
+                        read(grades, run.start, run.count, () -> unmatchedGrades.accept(grades.line()));
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            loader.close();
+            throw e;
+        }
+        return loader;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            IOException failure = null;
+            synchronized (idle) {
+                idle.clear();
+                for (MappedCsvReader reader : opened) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                opened.clear();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The runs of each chunk in file order. A line continues the chunk's last run when it has the
+    // same ID bytes, so IDs are only decoded where they change.
+    private static List<Run> runs(ParallelLoader parallelLoader, String fileName, int minFields, String warning)
+            throws IOException {
+        List<ParallelLoader.Chunk<Run>> chunks = parallelLoader.parse(fileName, 1, false, (reader, chunk) -> {
+            if (reader.fieldCount() < minFields) {
+                chunk.warnings.add(warning + reader.line());
+                return;
+            }
+            List<Run> runs = chunk.partitions.get(0);
+            Run last = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+            if (last != null && last.end == reader.lineOffset() && reader.fieldEquals(0, last.idBytes)) {
+                last.end = reader.nextLineOffset();
+                last.count++;
+            } else {
+                runs.add(new Run(reader.field(0), reader.lineOffset(), reader.nextLineOffset()));
+            }
+        });
+        List<Run> runs = new ArrayList<>();
+        for (ParallelLoader.Chunk<Run> chunk : chunks) {
+            runs.addAll(chunk.partitions.get(0));
+        }
+        return runs;
+    }
+
+    private Pending pendingOf(Student student) {
+        if (student == null) {
+            return null;
+        }
+        Pending pending = student.pendingSubjects();
+        if (pending == null) {
+            pending = new Pending(this);
+            student.setPendingSubjects(pending);
+        }
+        return pending;
+    }
+
+    // Parses the student's lines and hands the subjects over, once; other threads asking for the
+    // same student wait here until they are in place. If the files cannot be read the student
+    // keeps whatever was parsed before the error.
+    private void load(Student student, Pending pending) {
+        synchronized (pending) {
+            if (student.pendingSubjects() != pending) {
+                return;
+            }
+            List<Subject> loaded = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                if (closed) {
+                    throw new IOException("The subjects and grades files are closed.");
+                }
+                MappedCsvReader[] pair = borrowReaders();
+                try {
+                    read(pair[0], pending.subjects, () -> loaded.add(subject(pair[0])));
+                    read(pair[1], pending.grades, () -> grade(pair[1], loaded, unmatchedGrades));
+                } finally {
+                    synchronized (idle) {
+                        idle.push(pair);
+                        idle.notify();
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Error loading subjects of student " + student.getId() + ": " + e.getMessage());
+            } finally {
+                lock.readLock().unlock();
+            }
+            student.attachLoadedSubjects(loaded);
+        }
+    }
+
+    // An idle reader pair, a new one while there are fewer than maxReaders, or the next one
+    // another load hands back
+    private MappedCsvReader[] borrowReaders() throws IOException {
+        synchronized (idle) {
+            while (idle.isEmpty() && opened.size() >= 2 * maxReaders) {
+                try {
+                    idle.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while loading", e);
+                }
+            }
+            if (!idle.isEmpty()) {
+                return idle.pop();
+            }
+            MappedCsvReader subjects = new MappedCsvReader(subjectFile);
+            MappedCsvReader grades;
+            try {
+                grades = new MappedCsvReader(gradeFile);
+            } catch (IOException e) {
+                subjects.close();
+                throw e;
+            }
+            opened.add(subjects);
+            opened.add(grades);
+            return new MappedCsvReader[] { subjects, grades };
+        }
+    }
+
+    private static void read(MappedCsvReader reader, Lines lines, Runnable parse) throws IOException {
+        read(reader, lines.start, lines.count, parse);
+        if (lines.more != null) {
+            for (int pair = 0; pair < lines.more[0]; pair++) {
+                read(reader, lines.more[2 * pair + 1], (int) lines.more[2 * pair + 2], parse);
+            }
+        }
+    }
+
+    private static void read(MappedCsvReader reader, long start, int count, Runnable parse) throws IOException {
+        reader.seek(start);
+        for (int i = 0; i < count && reader.next(); i++) {
+            parse.run();
+        }
+    }
+
+    private static Subject subject(MappedCsvReader subjects) {
+        Subject subject = new Subject(subjects.field(1));
+        subject.setCourseNumber(subjects.field(2));
+        subject.setInstructorName(subjects.field(3));
+        return subject;
+    }
+
+    // A later grade for the same subject replaces the earlier one, and a line with a score that
+    // is not a number is reported and skipped, as in the eager loader
+    private static void grade(MappedCsvReader grades, List<Subject> loaded, Consumer<String> unmatched) {
+        Grade grade;
+        try {
+            grade = new Grade(grades.intField(2), grades.intField(3), grades.intField(4), grades.doubleField(5));
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid line format in grades.csv: " + grades.line());
+            return;
+        }
+        String name = grades.field(1);
+        for (Subject subject : loaded) {
+            if (subject.getName().equals(name)) {
+                subject.setGrade(grade);
+                return;
+            }
+        }
+        unmatched.accept(grades.line());
+    }
+}
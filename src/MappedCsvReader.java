@@ -0,0 +1,257 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+// Reads a CSV file through a memory-mapped view, one line at a time. Field boundaries are
+// found directly in the mapped bytes, numeric fields are parsed without creating Strings,
+// and only the text fields a caller asks for are decoded.
+class MappedCsvReader implements AutoCloseable {
+    private static final long REGION_SIZE = 1L << 30;
+    private static final int MAX_FIELDS = 32;
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15 };
+
+    private final FileChannel channel;
+    private final long end;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position;
+    private final int[] starts = new int[MAX_FIELDS];
+    private final int[] ends = new int[MAX_FIELDS];
+    private int fieldCount;
+    private int lineStart;
+    private int lineEnd;
+    private byte[] scratch = new byte[256];
+
+    public MappedCsvReader(String fileName) throws IOException {
+        this(fileName, 0, Long.MAX_VALUE);
+    }
+
+    // Reads only the lines that start in [from, to); use lineAlignedSplits to pick the bounds
+    public MappedCsvReader(String fileName, long from, long to) throws IOException {
+        this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        this.end = Math.min(to, channel.size());
+        this.position = from;
+    }
+
+    // Cuts a file into roughly equal byte ranges that each begin at the start of a line.
+    // The result holds chunks + 1 offsets; chunk i spans [splits[i], splits[i + 1]).
+    public static long[] lineAlignedSplits(String fileName, int chunks) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] splits = new long[chunks + 1];
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            for (int i = 1; i < chunks; i++) {
+                long position = Math.max(size * i / chunks, splits[i - 1]);
+                // Move forward to just past the next newline
+                scan: while (position < size) {
+                    buffer.clear();
+                    int read = channel.read(buffer, position);
+                    for (int j = 0; j < read; j++) {
+                        if (buffer.get(j) == '\n') {
+                            position += j + 1;
+                            break scan;
+                        }
+                    }
+                    position += read;
+                }
+                splits[i] = Math.min(position, size);
+            }
+            splits[chunks] = size;
+            return splits;
+        }
+    }
+
+    // Advances to the next line and splits it into fields; returns false at the end of the file
+    public boolean next() throws IOException {
+        if (position >= end) {
+            return false;
+        }
+        while (true) {
+            if (region == null || position >= regionStart + region.limit()) {
+                map(position);
+            }
+            int offset = (int) (position - regionStart);
+            int limit = region.limit();
+            int i = offset;
+            fieldCount = 0;
+            starts[0] = offset;
+            while (i < limit) {
+                byte b = region.get(i);
+                if (b == '\n') {
+                    break;
+                }
+                if (b == ',' && fieldCount < MAX_FIELDS - 1) {
+                    ends[fieldCount++] = i;
+                    starts[fieldCount] = i + 1;
+                }
+                i++;
+            }
+            if (i == limit && regionStart + limit < end) {
+                // The line runs past the mapped region, so map again starting at this line
+                if (offset == 0) {
+                    throw new IOException("Line longer than " + REGION_SIZE + " bytes");
+                }
+                map(position);
+                continue;
+            }
+            int last = i;
+            if (last > offset && region.get(last - 1) == '\r') {
+                last--;
+            }
+            ends[fieldCount] = Math.max(last, starts[fieldCount]);
+            fieldCount++;
+            lineStart = offset;
+            lineEnd = last;
+            position = regionStart + i + 1;
+            return true;
+        }
+    }
+
+    // Moves to a line start found earlier through lineOffset; the next call to next reads that line
+    public void seek(long offset) {
+        if (region != null && (offset < regionStart || offset >= regionStart + region.limit())) {
+            region = null;
+        }
+        position = offset;
+    }
+
+    // File offset of the current line
+    public long lineOffset() {
+        return regionStart + lineStart;
+    }
+
+    // File offset just past the current line and its line break
+    public long nextLineOffset() {
+        return position;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public String field(int index) {
+        return decode(starts[index], ends[index]);
+    }
+
+    // Whether a field holds exactly these bytes, without decoding it
+    public boolean fieldEquals(int index, byte[] value) {
+        int from = starts[index];
+        if (ends[index] - from != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (region.get(from + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String line() {
+        return decode(lineStart, lineEnd);
+    }
+
+    public boolean isBlankLine() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (!Character.isWhitespace(region.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int intField(int index) {
+        int i = skipSpaces(starts[index], ends[index]);
+        int limit = trimEnd(i, ends[index]);
+        boolean negative = i < limit && region.get(i) == '-';
+        if (negative || (i < limit && region.get(i) == '+')) {
+            i++;
+        }
+        if (i == limit) {
+            throw new NumberFormatException("For input string: \"" + field(index) + "\"");
+        }
+        long value = 0;
+        for (; i < limit; i++) {
+            int digit = region.get(i) - '0';
+            if (digit < 0 || digit > 9 || (value = value * 10 + digit) > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException("For input string: \"" + field(index) + "\"");
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + field(index) + "\"");
+        }
+        return (int) value;
+    }
+
+    // Parses plain decimals such as "93.90" as digits / 10^scale, which rounds exactly like
+    // Double.parseDouble; anything longer or fancier is handed to Double.parseDouble
+    public double doubleField(int index) {
+        int i = skipSpaces(starts[index], ends[index]);
+        int limit = trimEnd(i, ends[index]);
+        boolean negative = i < limit && region.get(i) == '-';
+        if (negative || (i < limit && region.get(i) == '+')) {
+            i++;
+        }
+        long digits = 0;
+        int digitCount = 0;
+        int scale = -1;
+        for (; i < limit; i++) {
+            byte b = region.get(i);
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || ++digitCount > 15) {
+                return Double.parseDouble(field(index).trim());
+            }
+            digits = digits * 10 + digit;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+        if (digitCount == 0) {
+            throw new NumberFormatException("For input string: \"" + field(index) + "\"");
+        }
+        double value = scale > 0 ? digits / POWERS_OF_TEN[scale] : digits;
+        return negative ? -value : value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void map(long from) throws IOException {
+        regionStart = from;
+        region = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(REGION_SIZE, end - from));
+    }
+
+    private int skipSpaces(int from, int to) {
+        while (from < to && region.get(from) == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while (to > from && region.get(to - 1) == ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private String decode(int from, int to) {
+        int length = to - from;
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        region.get(from, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,81 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+// Sorted secondary index from a name to the students that have it.
+// Keys are folded to lower case so case-insensitive and prefix lookups are range queries.
+// Writes are serialized by StudentRepository while lookups run concurrently, so both levels
+// are concurrent skip lists; each bucket maps repository insertion order to the student, so a
+// changed copy of a student put in its place replaces it in one step.
+// Bucket sizes are kept alongside, since a skip list counts by walking itself, for the query
+// planner to weigh one index against another.
+class NameIndex {
+    private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<Long, Student>> entries =
+            new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Integer> sizes = new ConcurrentHashMap<>();
+
+    private static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    public void add(String name, Student student) {
+        String key = fold(name);
+        if (entries.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>()).put(student.sequence, student) == null) {
+            sizes.merge(key, 1, Integer::sum);
+        }
+    }
+
+    public void remove(String name, Student student) {
+        String key = fold(name);
+        ConcurrentSkipListMap<Long, Student> bucket = entries.get(key);
+        if (bucket != null) {
+            if (bucket.remove(student.sequence, student)) {
+                sizes.merge(key, -1, (size, delta) -> size + delta == 0 ? null : size + delta);
+            }
+            if (bucket.isEmpty()) {
+                entries.remove(key, bucket);
+            }
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        sizes.clear();
+    }
+
+    // Number of students with the name, ignoring case
+    public int count(String name) {
+        return sizes.getOrDefault(fold(name), 0);
+    }
+
+    public List<Student> findExact(String name, Function<Student, String> field) {
+        List<Student> matches = new ArrayList<>();
+        for (Student student : bucket(name)) {
+            if (field.apply(student).equals(name)) {
+                matches.add(student);
+            }
+        }
+        return matches;
+    }
+
+    // Live, read-only view of the students with the name, ignoring case
+    public Collection<Student> bucket(String name) {
+        ConcurrentSkipListMap<Long, Student> bucket = entries.get(fold(name));
+        return bucket == null ? Collections.emptyList() : Collections.unmodifiableCollection(bucket.values());
+    }
+
+    public List<Student> findIgnoreCase(String name) {
+        return new ArrayList<>(bucket(name));
+    }
+
+    public List<Student> findByPrefix(String prefix) {
+        String key = fold(prefix);
+        List<Student> matches = new ArrayList<>();
+        for (ConcurrentSkipListMap<Long, Student> bucket : entries.subMap(key, true, key + Character.MAX_VALUE, false)
+                .values()) {
+            matches.addAll(bucket.values());
+        }
+        return matches;
+    }
+}
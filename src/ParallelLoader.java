@@ -0,0 +1,224 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// Startup loader that cuts each CSV file into line-aligned chunks and parses them in parallel
+// on a ForkJoinPool. Subject and grade rows are then joined to their students in a parallel
+// merge: rows are bucketed by student ID while parsing, and each merge task owns one bucket,
+// so no student is touched by two threads and file order is kept within every student.
+class ParallelLoader implements AutoCloseable {
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+
+    private final ForkJoinPool pool;
+    private final int partitions;
+
+    interface RowParser<R> {
+        // Parses the reader's current line into chunk, or records a warning for it
+        void parse(MappedCsvReader reader, Chunk<R> chunk);
+    }
+
+    static class Chunk<R> {
+        final List<List<R>> partitions = new ArrayList<>();
+        final List<String> warnings = new ArrayList<>();
+
+        Chunk(int partitionCount) {
+            for (int i = 0; i < partitionCount; i++) {
+                partitions.add(new ArrayList<>());
+            }
+        }
+
+        void add(String studentId, R row) {
+            partitions.get(partitions.size() == 1 ? 0 : partitionOf(studentId, partitions.size())).add(row);
+        }
+    }
+
+    static class SubjectRow {
+        final String studentId;
+        final Subject subject;
+
+        SubjectRow(String studentId, Subject subject) {
+            this.studentId = studentId;
+            this.subject = subject;
+        }
+    }
+
+    // Grade slots are only allocated once a row is known to belong to a loaded subject
+    static class GradeRow {
+        final String studentId;
+        final String subjectName;
+        final int prelims;
+        final int midterms;
+        final int finals;
+        final double finalRating;
+
+        GradeRow(String studentId, String subjectName, int prelims, int midterms, int finals,
+                double finalRating) {
+            this.studentId = studentId;
+            this.subjectName = subjectName;
+            this.prelims = prelims;
+            this.midterms = midterms;
+            this.finals = finals;
+            this.finalRating = finalRating;
+        }
+    }
+
+    public ParallelLoader(int threads) {
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+        this.partitions = Math.max(1, threads) * 4;
+    }
+
+    public List<Student> readStudents(String fileName) throws IOException {
+        List<Chunk<Student>> chunks = parse(fileName, 1, true, (reader, chunk) -> {
+            if (reader.fieldCount() < 11) {
+                chunk.warnings.add("Invalid line in students file: " + reader.line());
+                return;
+            }
+            chunk.add(null, new Student(reader.field(0), reader.field(1), reader.field(2), reader.field(3),
+                    reader.field(4), reader.field(5), reader.field(6), reader.field(7), reader.field(8),
+                    reader.field(9), reader.field(10)));
+        });
+        List<Student> loaded = new ArrayList<>();
+        for (Chunk<Student> chunk : chunks) {
+            loaded.addAll(chunk.partitions.get(0));
+        }
+        return loaded;
+    }
+
+    public void readSubjects(String fileName, Map<String, Student> studentsById) throws IOException {
+        List<Chunk<SubjectRow>> chunks = parse(fileName, partitions, false, (reader, chunk) -> {
+            if (reader.fieldCount() < 4) {
+                chunk.warnings.add(String.format("Invalid line in subjects file: %s", reader.line()));
+                return;
+            }
+            String studentId = reader.field(0);
+            Subject subject = new Subject(reader.field(1));
+            subject.setCourseNumber(reader.field(2));
+            subject.setInstructorName(reader.field(3));
+            chunk.add(studentId, new SubjectRow(studentId, subject));
+        });
+        merge(chunks, row -> {
+            Student student = studentsById.get(row.studentId);
+            if (student != null) {
+                student.addSubject(row.subject);
+            }
+        });
+    }
+
+    // Rows without a loaded student and subject to take them go to unmatched, reformatted as
+    // grades.csv lines
+    public void readGrades(String fileName, Map<String, Student> studentsById, Consumer<String> unmatched)
+            throws IOException {
+        List<Chunk<GradeRow>> chunks = parse(fileName, partitions, false, (reader, chunk) -> {
+            if (reader.fieldCount() < 6) {
+                chunk.warnings.add("Invalid line format in grades.csv: " + reader.line());
+                return;
+            }
+            String studentId = reader.field(0).trim();
+            GradeRow row;
+            try {
+                row = new GradeRow(studentId, reader.field(1), reader.intField(2), reader.intField(3),
+                        reader.intField(4), reader.doubleField(5));
+            } catch (NumberFormatException e) {
+                chunk.warnings.add("Invalid line format in grades.csv: " + reader.line());
+                return;
+            }
+            chunk.add(studentId, row);
+        });
+        merge(chunks, row -> {
+            Student student = studentsById.get(row.studentId);
+            Subject subject = student == null ? null : student.getSubject(row.subjectName);
+            if (subject != null) {
+                subject.setGrade(new Grade(row.prelims, row.midterms, row.finals, row.finalRating));
+            } else {
+                unmatched.accept(String.format("%s,%s,%d,%d,%d,%.2f", row.studentId, row.subjectName, row.prelims,
+                        row.midterms, row.finals, row.finalRating));
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    static int partitionOf(String studentId, int partitionCount) {
+        return (studentId.hashCode() & 0x7fffffff) % partitionCount;
+    }
+
+    // Parses the file in chunks; with one partition each chunk's rows stay in file order
+    <R> List<Chunk<R>> parse(String fileName, int partitionCount, boolean skipHeader, RowParser<R> parser)
+            throws IOException {
+        long size = Files.size(Paths.get(fileName));
+        int chunkCount = (int) Math.max(1, Math.min(pool.getParallelism() * 4L, size / MIN_CHUNK_BYTES));
+        long[] splits = MappedCsvReader.lineAlignedSplits(fileName, chunkCount);
+        List<Callable<Chunk<R>>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunkCount; i++) {
+            long from = splits[i];
+            long to = splits[i + 1];
+            boolean header = skipHeader && i == 0;
+            tasks.add(() -> {
+                Chunk<R> chunk = new Chunk<>(partitionCount);
+                try (MappedCsvReader reader = new MappedCsvReader(fileName, from, to)) {
+                    boolean skip = header;
+                    while (reader.next()) {
+                        if (skip) {
+                            skip = false;
+                            continue;
+                        }
+                        parser.parse(reader, chunk);
+                    }
+                }
+                return chunk;
+            });
+        }
+        List<Chunk<R>> chunks = await(pool.invokeAll(tasks));
+        // Report bad lines in file order once all chunks are in
+        for (Chunk<R> chunk : chunks) {
+            for (String warning : chunk.warnings) {
+                System.out.println(warning);
+            }
+        }
+        return chunks;
+    }
+
+    private <R> void merge(List<Chunk<R>> chunks, Consumer<R> join) throws IOException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            tasks.add(() -> {
+                for (Chunk<R> chunk : chunks) {
+                    for (R row : chunk.partitions.get(partition)) {
+                        join.accept(row);
+                    }
+                }
+                return null;
+            });
+        }
+        await(pool.invokeAll(tasks));
+    }
+
+    private static <T> List<T> await(List<Future<T>> futures) throws IOException {
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+        return results;
+    }
+}
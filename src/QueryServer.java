@@ -0,0 +1,504 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+// Read-only HTTP/JSON view of a StudentRepository, started with --serve <port>. It serves
+// personal details without authentication, so it listens on loopback unless told otherwise:
+//   GET /students?page=1&size=10        one page of the roster in insertion order
+//   GET /students?order=lastName&after=<cursor>&size=10   keyset paging by id, lastName or enrollmentDate
+//   GET /students/<id>                  one student
+//   GET /students/<id>/subjects         the student's subjects with their grades
+//   GET /search?lastName=|firstName=|prefix=&limit=100   name search, like the search menu
+//   GET /search?q=&limit=100            fuzzy search over names, email, address, course and phone
+//   GET /query?q=course = BSIT and any finalRating < 75&limit=100   StudentQuery filter, with its plan
+//   GET /statistics?by=subject|courseNumber|instructor|course   final rating statistics
+//   GET /rankings?course=BSIT&limit=10 | /rankings?id=<id>   top students by GWA, or one student's rank
+//   GET /changes?from=1&limit=1000      the change feed from a sequence number on, for consumers to poll
+// Each request runs on a virtual thread where the JDK has them (21 and later) and on a pool
+// of platform threads otherwise.
+class QueryServer {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_SEARCH_LIMIT = 100;
+    private static final Map<String, GradeStatistics.Dimension> DIMENSIONS = Map.of("subject",
+            GradeStatistics.Dimension.SUBJECT, "courseNumber", GradeStatistics.Dimension.COURSE_NUMBER, "instructor",
+            GradeStatistics.Dimension.INSTRUCTOR, "course", GradeStatistics.Dimension.COURSE);
+    private static final Map<String, StudentOrder> ORDERS = Map.of("id", StudentOrder.ID, "lastName",
+            StudentOrder.LAST_NAME, "enrollmentDate", StudentOrder.ENROLLMENT_DATE);
+
+    private final StudentRepository repository;
+    // Null when the server has no change feed to offer
+    private final ChangeFeed changes;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // Listens on the loopback interface only
+    QueryServer(StudentRepository repository, int port) throws IOException {
+        this(repository, null, InetAddress.getLoopbackAddress(), port);
+    }
+
+    QueryServer(StudentRepository repository, ChangeFeed changes, InetAddress address, int port) throws IOException {
+        this.repository = repository;
+        this.changes = changes;
+        server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/students", this::handleStudents);
+        server.createContext("/search", this::handleSearch);
+        server.createContext("/query", this::handleQuery);
+        server.createContext("/statistics", this::handleStatistics);
+        server.createContext("/rankings", this::handleRankings);
+        server.createContext("/changes", this::handleChanges);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor is looked up by reflection so the class still
+    // compiles and runs on JDK 17
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors() * 4));
+        }
+    }
+
+    private void handleStudents(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Only GET is supported."));
+            return;
+        }
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        // path[0] is empty and path[1] is "students"
+        if (path.length < 2 || !path[1].equals("students")) {
+            send(exchange, 404, error("Not found."));
+            return;
+        }
+        if (path.length == 2) {
+            Map<String, String> query = query(exchange);
+            int page = intParameter(query, "page", 1);
+            int size = intParameter(query, "size", 10);
+            if (page < 1 || size < 1 || size > MAX_PAGE_SIZE) {
+                send(exchange, 400, error("page must be at least 1 and size from 1 to " + MAX_PAGE_SIZE + "."));
+                return;
+            }
+            if (query.containsKey("order")) {
+                sendKeysetPage(exchange, query, page, size);
+                return;
+            }
+            int total = repository.size();
+            StringBuilder json = new StringBuilder();
+            json.append("{\"page\":").append(page).append(",\"size\":").append(size).append(",\"pages\":")
+                    .append((total + size - 1) / size).append(",\"total\":").append(total).append(",\"students\":");
+            appendStudents(json, repository.students((int) Math.min((long) (page - 1) * size, total), size));
+            send(exchange, 200, json.append('}').toString());
+            return;
+        }
+        Student student = path.length <= 4 ? repository.findById(path[2]) : null;
+        if (student == null || (path.length == 4 && !path[3].equals("subjects"))) {
+            send(exchange, 404, error("Student not found."));
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        if (path.length == 4) {
+            appendSubjects(json, student);
+        } else {
+            appendStudent(json, student);
+        }
+        send(exchange, 200, json.toString());
+    }
+
+    // A page in a sorted order. The previous and next cursors in the response are passed back
+    // as before= or after= to move one page, which costs the same wherever the page is.
+    private void sendKeysetPage(HttpExchange exchange, Map<String, String> query, int page, int size)
+            throws IOException {
+        StudentOrder order = ORDERS.get(query.get("order"));
+        if (order == null) {
+            send(exchange, 400, error("order must be id, lastName or enrollmentDate."));
+            return;
+        }
+        StudentRepository.Page result;
+        try {
+            if (query.containsKey("after")) {
+                result = repository.pageAfter(order, query.get("after"), size);
+            } else if (query.containsKey("before")) {
+                result = repository.pageBefore(order, query.get("before"), size);
+            } else {
+                result = repository.pageAt(order, page, size);
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+            return;
+        }
+        StringBuilder json = new StringBuilder("{");
+        field(json, "order", query.get("order")).append(",\"size\":").append(size).append(",\"total\":")
+                .append(repository.size()).append(',');
+        field(json, "previous", result.previousCursor).append(',');
+        field(json, "next", result.nextCursor).append(",\"students\":");
+        appendStudents(json, result.students);
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    private void handleSearch(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Only GET is supported."));
+            return;
+        }
+        Map<String, String> query = query(exchange);
+        int limit = intParameter(query, "limit", DEFAULT_SEARCH_LIMIT);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            send(exchange, 400, error("limit must be from 1 to " + MAX_PAGE_SIZE + "."));
+            return;
+        }
+        if (query.containsKey("q")) {
+            StringBuilder json = new StringBuilder("[");
+            boolean first = true;
+            for (FuzzyIndex.Match match : repository.findFuzzy(query.get("q"), limit)) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                number(json.append("{\"score\":"), match.score).append(",\"student\":");
+                appendStudent(json, match.student);
+                json.append('}');
+            }
+            send(exchange, 200, json.append(']').toString());
+            return;
+        }
+        List<Student> found;
+        if (query.containsKey("lastName")) {
+            found = repository.findByLastName(query.get("lastName"));
+        } else if (query.containsKey("firstName")) {
+            found = repository.findByFirstName(query.get("firstName"));
+        } else if (query.containsKey("prefix")) {
+            found = repository.findByNamePrefix(query.get("prefix"));
+        } else {
+            send(exchange, 400, error("Search by lastName, firstName, prefix or q."));
+            return;
+        }
+        StringBuilder json = new StringBuilder();
+        json.append("{\"total\":").append(found.size()).append(",\"students\":");
+        appendStudents(json, found.subList(0, Math.min(limit, found.size())));
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Only GET is supported."));
+            return;
+        }
+        Map<String, String> query = query(exchange);
+        int limit = intParameter(query, "limit", DEFAULT_SEARCH_LIMIT);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            send(exchange, 400, error("limit must be from 1 to " + MAX_PAGE_SIZE + "."));
+            return;
+        }
+        StudentQuery.Plan plan;
+        try {
+            plan = repository.plan(StudentQuery.parse(query.getOrDefault("q", "")));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+            return;
+        }
+        List<Student> found = plan.stream().limit(limit).collect(Collectors.toList());
+        StringBuilder json = new StringBuilder("{");
+        field(json, "plan", plan.toString()).append(",\"students\":");
+        appendStudents(json, found);
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    // Overall statistics, plus one entry per group when by= is given
+    private void handleStatistics(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Only GET is supported."));
+            return;
+        }
+        Map<String, String> query = query(exchange);
+        GradeStatistics.Dimension dimension = query.containsKey("by") ? DIMENSIONS.get(query.get("by")) : null;
+        if (query.containsKey("by") && dimension == null) {
+            send(exchange, 400, error("by must be subject, courseNumber, instructor or course."));
+            return;
+        }
+        GradeStatistics statistics = repository.statistics();
+        StringBuilder json = new StringBuilder("{\"overall\":");
+        appendSummary(json, statistics.overall());
+        if (dimension != null) {
+            json.append(",\"groups\":{");
+            boolean first = true;
+            for (Map.Entry<String, GradeStatistics.Summary> group : statistics.summaries(dimension).entrySet()) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                string(json, group.getKey()).append(':');
+                appendSummary(json, group.getValue());
+            }
+            json.append('}');
+        }
+        send(exchange, 200, json.append('}').toString());
+    }
+
+    private void handleRankings(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Only GET is supported."));
+            return;
+        }
+        Map<String, String> query = query(exchange);
+        Rankings rankings = repository.rankings();
+        StringBuilder json = new StringBuilder();
+        if (query.containsKey("id")) {
+            Student student = repository.findById(query.get("id"));
+            if (student == null) {
+                send(exchange, 404, error("Student not found."));
+                return;
+            }
+            Rankings.Ranked inCourse = rankings.rankOf(student, true);
+            if (inCourse == null) {
+                send(exchange, 404, error("Student has no grades."));
+                return;
+            }
+            Rankings.Ranked overall = rankings.rankOf(student, false);
+            json.append("{\"id\":");
+            string(json, student.getId()).append(',');
+            number(json.append("\"gwa\":"), inCourse.gwa);
+            json.append(",\"courseRank\":").append(inCourse.rank).append(",\"courseSize\":").append(inCourse.of)
+                    .append(",\"overallRank\":").append(overall.rank).append(",\"overallSize\":")
+                    .append(overall.of).append('}');
+            send(exchange, 200, json.toString());
+            return;
+        }
+        int limit = intParameter(query, "limit", 10);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            send(exchange, 400, error("limit must be from 1 to " + MAX_PAGE_SIZE + "."));
+            return;
+        }
+        json.append('[');
+        boolean first = true;
+        for (Rankings.Ranked ranked : rankings.top(query.get("course"), limit)) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"rank\":").append(ranked.rank).append(',');
+            field(json, "id", ranked.student.getId()).append(',');
+            field(json, "lastName", ranked.student.getLastName()).append(',');
+            field(json, "firstName", ranked.student.getFirstName()).append(',');
+            field(json, "course", ranked.student.getCourse()).append(',');
+            number(json.append("\"gwa\":"), ranked.gwa);
+            json.append('}');
+        }
+        send(exchange, 200, json.append(']').toString());
+    }
+
+    // Changes from from= on, oldest first. A consumer keeps the returned next and passes it as
+    // from= on its next poll; an empty list means it has caught up.
+    private void handleChanges(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, error("Only GET is supported."));
+            return;
+        }
+        if (changes == null) {
+            send(exchange, 404, error("No change feed."));
+            return;
+        }
+        Map<String, String> query = query(exchange);
+        int limit = intParameter(query, "limit", MAX_PAGE_SIZE);
+        long from;
+        try {
+            from = Long.parseLong(query.getOrDefault("from", "1"));
+        } catch (NumberFormatException e) {
+            from = -1;
+        }
+        if (from < 1 || limit < 1 || limit > MAX_PAGE_SIZE) {
+            send(exchange, 400, error("from must be at least 1 and limit from 1 to " + MAX_PAGE_SIZE + "."));
+            return;
+        }
+        List<ChangeFeed.Change> found = changes.read(from, limit);
+        long next = found.isEmpty() ? from : found.get(found.size() - 1).seq + 1;
+        StringBuilder json = new StringBuilder("{\"next\":").append(next).append(",\"changes\":[");
+        for (int i = 0; i < found.size(); i++) {
+            ChangeFeed.Change change = found.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"seq\":").append(change.seq).append(',');
+            field(json, "type", change.type()).append(",\"fields\":[");
+            String[] fields = change.fields();
+            for (int f = 1; f < fields.length; f++) {
+                if (f > 1) {
+                    json.append(',');
+                }
+                string(json, fields[f]);
+            }
+            json.append("]}");
+        }
+        send(exchange, 200, json.append("]}").toString());
+    }
+
+    private static void appendSummary(StringBuilder json, GradeStatistics.Summary summary) {
+        json.append("{\"count\":").append(summary.count);
+        number(json, "mean", summary.mean);
+        number(json, "median", summary.median);
+        number(json, "p25", summary.p25);
+        number(json, "p75", summary.p75);
+        number(json, "p90", summary.p90);
+        number(json, "min", summary.min);
+        number(json, "max", summary.max);
+        number(json, "passRate", summary.passRate);
+        json.append(",\"distribution\":{");
+        for (int i = 0; i < summary.bands.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(GradeStatistics.BAND_LABELS[i]).append("\":").append(summary.bands[i]);
+        }
+        json.append("}}");
+    }
+
+    private static void number(StringBuilder json, String name, double value) {
+        number(json.append(",\"").append(name).append("\":"), value);
+    }
+
+    private static StringBuilder number(StringBuilder json, double value) {
+        return json.append(String.format(Locale.ROOT, "%.4f", value));
+    }
+
+    private static void appendStudents(StringBuilder json, List<Student> students) {
+        json.append('[');
+        for (int i = 0; i < students.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendStudent(json, students.get(i));
+        }
+        json.append(']');
+    }
+
+    private static void appendStudent(StringBuilder json, Student student) {
+        json.append('{');
+        field(json, "id", student.getId()).append(',');
+        field(json, "lastName", student.getLastName()).append(',');
+        field(json, "firstName", student.getFirstName()).append(',');
+        field(json, "middleName", student.getMiddleName()).append(',');
+        field(json, "address", student.getAddress()).append(',');
+        field(json, "gender", student.getGender()).append(',');
+        field(json, "phoneNumber", student.getPhoneNumber()).append(',');
+        field(json, "emailAddress", student.getEmailAddress()).append(',');
+        field(json, "dateOfBirth", student.getDateOfBirth()).append(',');
+        field(json, "course", student.getCourse()).append(',');
+        field(json, "dateOfEnrollment", student.getDateOfEnrollment());
+        json.append('}');
+    }
+
+    private static void appendSubjects(StringBuilder json, Student student) {
+        json.append('[');
+        boolean first = true;
+        for (Subject subject : student.getSubjects()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('{');
+            field(json, "name", subject.getName()).append(',');
+            field(json, "courseNumber", subject.getCourseNumber()).append(',');
+            field(json, "instructorName", subject.getInstructorName()).append(",\"grade\":");
+            Grade grade = subject.getGrade();
+            if (grade == null) {
+                json.append("null");
+            } else {
+                json.append("{\"prelims\":").append(grade.getPrelims()).append(",\"midterms\":")
+                        .append(grade.getMidterms()).append(",\"finals\":").append(grade.getFinals())
+                        .append(",\"finalRating\":").append(String.format(Locale.ROOT, "%.2f", grade.getFinalRating()))
+                        .append('}');
+            }
+            json.append('}');
+        }
+        json.append(']');
+    }
+
+    private static StringBuilder field(StringBuilder json, String name, String value) {
+        json.append('"').append(name).append("\":");
+        if (value == null) {
+            return json.append("null");
+        }
+        return string(json, value);
+    }
+
+    private static StringBuilder string(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+
+    private static String error(String message) {
+        return field(new StringBuilder("{"), "error", message).append('}').toString();
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
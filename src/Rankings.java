@@ -0,0 +1,174 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Students ranked by general weighted average (GWA), the mean final rating of their graded
+// subjects, within their course and across all courses. Each ranking keeps its students in a
+// skip list sorted best first, so the top K cost O(log n + K), and a Fenwick tree counting
+// students per GWA in hundredths, so a student's rank costs O(log 10000) however many
+// students there are. Like GradeStatistics, it is built in one parallel pass and kept current
+// by StudentRepository, which takes a student out before a change and puts them back after.
+// Students with no graded subject are not ranked.
+class Rankings {
+    private static final int SCALE = 100;
+    private static final int MAX_GWA = 100 * SCALE;
+
+    // A ranked student. Students with the same GWA share a rank, and the next rank skips past
+    // them (1, 2, 2, 4).
+    static final class Ranked {
+        final Student student;
+        final double gwa;
+        final int rank;
+        final int of;
+
+        Ranked(Student student, double gwa, int rank, int of) {
+            this.student = student;
+            this.gwa = gwa;
+            this.rank = rank;
+            this.of = of;
+        }
+    }
+
+    // Best GWA first, then by ID
+    private static final class Key implements Comparable<Key> {
+        final int gwa;
+        final String id;
+        final long sequence;
+
+        Key(int gwa, Student student) {
+            this.gwa = gwa;
+            this.id = student.getId();
+            this.sequence = student.sequence;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int result = Integer.compare(other.gwa, gwa);
+            if (result == 0) {
+                result = id.compareTo(other.id);
+            }
+            if (result == 0) {
+                result = Long.compare(sequence, other.sequence);
+            }
+            return result;
+        }
+    }
+
+    private static final class Ranking {
+        private final ConcurrentSkipListMap<Key, Student> order = new ConcurrentSkipListMap<>();
+        // Fenwick tree over MAX_GWA - gwa, so a prefix sums the students doing better
+        private final int[] tree = new int[MAX_GWA + 2];
+
+        synchronized void record(Key key, Student student, int delta) {
+            if (delta > 0) {
+                order.put(key, student);
+            } else {
+                order.remove(key);
+            }
+            for (int i = MAX_GWA - key.gwa + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        // Students with a GWA strictly above the given one
+        synchronized int above(int gwa) {
+            int count = 0;
+            for (int i = MAX_GWA - gwa; i > 0; i -= i & -i) {
+                count += tree[i];
+            }
+            return count;
+        }
+
+        List<Ranked> top(int k) {
+            List<Ranked> top = new ArrayList<>(Math.min(k, 1024));
+            int size = order.size();
+            int previous = -1;
+            int rank = 0;
+            for (Map.Entry<Key, Student> entry : order.entrySet()) {
+                if (top.size() == k) {
+                    break;
+                }
+                if (entry.getKey().gwa != previous) {
+                    rank = top.size() + 1;
+                    previous = entry.getKey().gwa;
+                }
+                top.add(new Ranked(entry.getValue(), entry.getKey().gwa / (double) SCALE, rank, size));
+            }
+            return top;
+        }
+    }
+
+    private final Ranking overall = new Ranking();
+    private final ConcurrentHashMap<String, Ranking> byCourse = new ConcurrentHashMap<>();
+
+    // One parallel pass over the students into a single shared set of rankings, so there is one
+    // Fenwick tree per course however many workers the pass splits into
+    static Rankings of(Collection<Student> students) {
+        Rankings rankings = new Rankings();
+        students.parallelStream().forEach(rankings::add);
+        return rankings;
+    }
+
+    void add(Student student) {
+        record(student, 1);
+    }
+
+    void remove(Student student) {
+        record(student, -1);
+    }
+
+    // The best k students of a course, or of every course for a null course
+    List<Ranked> top(String course, int k) {
+        Ranking ranking = course == null ? overall : byCourse.get(course);
+        return ranking == null ? new ArrayList<>() : ranking.top(k);
+    }
+
+    // The student's place in their course, or across every course; null if they have no grades
+    Ranked rankOf(Student student, boolean inCourse) {
+        int gwa = gwa(student);
+        if (gwa < 0) {
+            return null;
+        }
+        Ranking ranking = overall;
+        if (inCourse) {
+            ranking = student.getCourse() == null ? null : byCourse.get(student.getCourse());
+        }
+        if (ranking == null) {
+            return null;
+        }
+        return new Ranked(student, gwa / (double) SCALE, ranking.above(gwa) + 1, ranking.order.size());
+    }
+
+    // Mean final rating in hundredths of a point, or -1 with no graded subject. Ratings outside
+    // 0-100, which the console does not reject, are ranked at the nearest end.
+    static int gwa(Student student) {
+        double sum = 0;
+        int graded = 0;
+        for (Subject subject : student.getSubjects()) {
+            Grade grade = subject.getGrade();
+            if (grade != null) {
+                sum += grade.getFinalRating();
+                graded++;
+            }
+        }
+        if (graded == 0) {
+            return -1;
+        }
+        return (int) Math.max(0, Math.min(MAX_GWA, Math.round(sum / graded * SCALE)));
+    }
+
+    private void record(Student student, int delta) {
+        int gwa = gwa(student);
+        if (gwa < 0) {
+            return;
+        }
+        Key key = new Key(gwa, student);
+        overall.record(key, student, delta);
+        if (student.getCourse() != null) {
+            byCourse.computeIfAbsent(student.getCourse(), course -> new Ranking()).record(key, student, delta);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Binary image of the whole Student -> Subject -> Grade graph, written next to the CSV files
+// at every checkpoint so startup can skip CSV parsing. The header records the size and
+// modification time of the CSV files it was taken from; if they no longer match, or the
+// trailing CRC32 does not, the snapshot is ignored and the CSV files are loaded instead.
+//
+// Layout (version 2): magic, version, CSV stamp, student count, students, count of grade lines
+// no student or subject took, those lines, CRC32.
+// Counts and numbers are varints, strings are a varint byte length (0 for null) followed by
+// UTF-8 bytes, and grades are packed as varints with the final rating in hundredths.
+class Snapshot {
+    private static final int MAGIC = 0x53444D53; // "SDMS"
+    private static final int VERSION = 2;
+
+    // Size and modification time of each file, or -1 when a file is missing
+    public static long[] stamp(String... fileNames) throws IOException {
+        long[] stamp = new long[fileNames.length * 2];
+        for (int i = 0; i < fileNames.length; i++) {
+            Path file = Paths.get(fileNames[i]);
+            boolean exists = Files.exists(file);
+            stamp[i * 2] = exists ? Files.size(file) : -1;
+            stamp[i * 2 + 1] = exists ? Files.getLastModifiedTime(file).toMillis() : -1;
+        }
+        return stamp;
+    }
+
+    public static void write(String fileName, List<Student> students, Collection<String> unmatchedGrades,
+            long[] stamp) throws IOException {
+        AtomicFile.writeBinary(fileName, stream -> {
+            CheckedOutputStream checked = new CheckedOutputStream(stream, new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeVarLong(out, stamp.length);
+            for (long value : stamp) {
+                writeVarLong(out, value + 1);
+            }
+            writeVarLong(out, students.size());
+            for (Student student : students) {
+                writeString(out, student.getId());
+                writeString(out, student.getLastName());
+                writeString(out, student.getFirstName());
+                writeString(out, student.getMiddleName());
+                writeString(out, student.getAddress());
+                writeString(out, student.getGender());
+                writeString(out, student.getPhoneNumber());
+                writeString(out, student.getEmailAddress());
+                writeString(out, student.getDateOfBirth());
+                writeString(out, student.getCourse());
+                writeString(out, student.getDateOfEnrollment());
+                writeVarLong(out, student.getSubjects().size());
+                for (Subject subject : student.getSubjects()) {
+                    writeString(out, subject.getName());
+                    writeString(out, subject.getCourseNumber());
+                    writeString(out, subject.getInstructorName());
+                    Grade grade = subject.getGrade();
+                    out.writeBoolean(grade != null);
+                    if (grade != null) {
+                        writeVarLong(out, zigZag(grade.getPrelims()));
+                        writeVarLong(out, zigZag(grade.getMidterms()));
+                        writeVarLong(out, zigZag(grade.getFinals()));
+                        writeVarLong(out, zigZag(Math.round(grade.getFinalRating() * 100)));
+                    }
+                }
+            }
+            List<String> unmatched = new ArrayList<>(unmatchedGrades);
+            writeVarLong(out, unmatched.size());
+            for (String line : unmatched) {
+                writeString(out, line);
+            }
+            out.flush();
+            stream.write(intBytes((int) checked.getChecksum().getValue()));
+        });
+    }
+
+    // Returns the students stored in the snapshot and adds its unmatched grade lines to
+    // unmatchedGrades, or returns null and adds nothing when it is missing, stale or damaged
+    public static List<Student> read(String fileName, long[] expectedStamp, Collection<String> unmatchedGrades) {
+        Path file = Paths.get(fileName);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            CheckedInputStream checked = new CheckedInputStream(stream, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int stampLength = (int) readVarLong(in);
+            if (stampLength != expectedStamp.length) {
+                return null;
+            }
+            for (long expected : expectedStamp) {
+                if (readVarLong(in) - 1 != expected) {
+                    return null;
+                }
+            }
+            byte[] buffer = new byte[256];
+            int count = (int) readVarLong(in);
+            List<Student> students = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Student student = new Student(readString(in, buffer), readString(in, buffer),
+                        readString(in, buffer), readString(in, buffer), readString(in, buffer),
+                        readString(in, buffer), readString(in, buffer), readString(in, buffer),
+                        readString(in, buffer), readString(in, buffer), readString(in, buffer));
+                int subjectCount = (int) readVarLong(in);
+                for (int j = 0; j < subjectCount; j++) {
+                    Subject subject = new Subject(readString(in, buffer), readString(in, buffer),
+                            readString(in, buffer));
+                    if (in.readBoolean()) {
+                        int prelims = (int) unZigZag(readVarLong(in));
+                        int midterms = (int) unZigZag(readVarLong(in));
+                        int finals = (int) unZigZag(readVarLong(in));
+                        double finalRating = unZigZag(readVarLong(in)) / 100.0;
+                        subject.setGrade(new Grade(prelims, midterms, finals, finalRating));
+                    }
+                    student.addSubject(subject);
+                }
+                students.add(student);
+            }
+            int unmatchedCount = (int) readVarLong(in);
+            List<String> unmatched = new ArrayList<>(unmatchedCount);
+            for (int i = 0; i < unmatchedCount; i++) {
+                unmatched.add(readString(in, buffer));
+            }
+            int checksum = (int) checked.getChecksum().getValue();
+            if (new DataInputStream(stream).readInt() != checksum) {
+                System.out.println("Ignoring damaged snapshot file.");
+                return null;
+            }
+            unmatchedGrades.addAll(unmatched);
+            return students;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ignoring unreadable snapshot file: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, byte[] buffer) throws IOException {
+        int length = (int) readVarLong(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= buffer.length ? buffer : new byte[length];
+        in.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Dictionary encoding for fields that repeat across many rows. Each distinct value is stored
+// once and referred to by a small int code, so a million students enrolled in three courses
+// hold three course Strings instead of a million copies. Codes are never reused or removed.
+class StringDictionary {
+    static final StringDictionary GENDERS = new StringDictionary();
+    static final StringDictionary DATES_OF_BIRTH = new StringDictionary();
+    static final StringDictionary COURSES = new StringDictionary();
+    static final StringDictionary ENROLLMENT_DATES = new StringDictionary();
+    static final StringDictionary SUBJECT_NAMES = new StringDictionary();
+    static final StringDictionary COURSE_NUMBERS = new StringDictionary();
+    static final StringDictionary INSTRUCTORS = new StringDictionary();
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private int size;
+
+    // Returns the code for a value, adding it on first sight; null is encoded as -1
+    public int encode(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            String[] current = values;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, size * 2);
+            }
+            current[size] = value;
+            // Publish the value before its code, so any thread holding the code can decode it
+            values = current;
+            codes.put(value, size);
+            return size++;
+        }
+    }
+
+    public String decode(int code) {
+        return code < 0 ? null : values[code];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -1,18 +1,34 @@
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 class Student {
+    // Subject lookups scan the list until a student has more subjects than this, then use maps
+    private static final int SUBJECT_INDEX_THRESHOLD = 8;
+
     private String id;
     private String lastName;
     private String firstName;
     private String middleName;
     private String address;
-    private String gender;
     private String phoneNumber;
     private String emailAddress;
-    private String dateOfBirth;
-    private String course;
-    private String dateOfEnrollment;
-    private List<Subject> subjects;
+    // Values shared by many students are held as StringDictionary codes
+    private int gender;
+    private int dateOfBirth;
+    private int course;
+    private int dateOfEnrollment;
+    // A stored student's subjects never change: the loaders attach them before the student is
+    // stored or before its pending marker is cleared, and StudentRepository changes a copy. So
+    // the list is a plain one, and the lookup maps are published fully built.
+    private final ArrayList<Subject> subjects;
+    private volatile Map<String, Subject> subjectsByName;
+    private volatile Map<String, Subject> subjectsByCourseNumber;
+    // Position in StudentRepository's insertion order, assigned when the student is stored
+    long sequence;
+    // Slot in the repository's FuzzyIndex, or -1 while not in it
+    int searchSlot = -1;
+    // In lazy mode, where this student's subjects and grades are until they are first needed
+    private volatile LazySubjectLoader.Pending pendingSubjects;
 
     public Student(String id, String lastName, String firstName, String middleName, String address, String gender,
             String phoneNumber, String emailAddress, String dateOfBirth, String course, String dateOfEnrollment) {
@@ -21,15 +37,34 @@ class Student {
         this.firstName = firstName;
         this.middleName = middleName;
         this.address = address;
-        this.gender = gender;
+        this.gender = StringDictionary.GENDERS.encode(gender);
         this.phoneNumber = phoneNumber;
         this.emailAddress = emailAddress;
-        this.dateOfBirth = dateOfBirth;
-        this.course = course;
-        this.dateOfEnrollment = dateOfEnrollment;
+        this.dateOfBirth = StringDictionary.DATES_OF_BIRTH.encode(dateOfBirth);
+        this.course = StringDictionary.COURSES.encode(course);
+        this.dateOfEnrollment = StringDictionary.ENROLLMENT_DATES.encode(dateOfEnrollment);
         this.subjects = new ArrayList<>();
     }
 
+    // A private copy for StudentRepository to change and swap in for this student, so readers
+    // holding this one never see a half-made edit. It keeps the same place in insertion order,
+    // and its subjects are copies holding grade slots of their own.
+    Student copy() {
+        loadSubjects();
+        Student copy = new Student(id, lastName, firstName, middleName, address, null, phoneNumber, emailAddress,
+                null, null, null);
+        copy.gender = gender;
+        copy.dateOfBirth = dateOfBirth;
+        copy.course = course;
+        copy.dateOfEnrollment = dateOfEnrollment;
+        copy.subjects.ensureCapacity(subjects.size());
+        for (Subject subject : subjects) {
+            copy.appendSubject(subject.copy());
+        }
+        copy.sequence = sequence;
+        return copy;
+    }
+
     public String getId() {
         return id;
     }
@@ -51,7 +86,7 @@ class Student {
     }
 
     public String getGender() {
-        return gender;
+        return StringDictionary.GENDERS.decode(gender);
     }
 
     public String getPhoneNumber() {
@@ -63,22 +98,29 @@ class Student {
     }
 
     public String getDateOfBirth() {
-        return dateOfBirth;
+        return StringDictionary.DATES_OF_BIRTH.decode(dateOfBirth);
     }
 
     public String getCourse() {
-        return course;
+        return StringDictionary.COURSES.decode(course);
     }
 
     public String getDateOfEnrollment() {
-        return dateOfEnrollment;
+        return StringDictionary.ENROLLMENT_DATES.decode(dateOfEnrollment);
     }
 
+    // Read-only, so every change goes through addSubject/removeSubject and keeps the lookup maps in sync
     public List<Subject> getSubjects() {
-        return subjects;
+        loadSubjects();
+        return Collections.unmodifiableList(subjects);
     }
 
     public Subject getSubject(String name) {
+        loadSubjects();
+        Map<String, Subject> byName = subjectsByName;
+        if (byName != null) {
+            return byName.get(name);
+        }
         for (Subject subject : subjects) {
             if (subject.getName().equals(name)) {
                 return subject;
@@ -88,27 +130,121 @@ class Student {
     }
 
     public void addSubject(Subject subject) {
+        loadSubjects();
+        appendSubject(subject);
+    }
+
+    private void appendSubject(Subject subject) {
         subjects.add(subject);
+        if (subjectsByName != null) {
+            indexSubject(subject);
+        } else if (subjects.size() > SUBJECT_INDEX_THRESHOLD) {
+            Map<String, Subject> byName = new ConcurrentHashMap<>();
+            Map<String, Subject> byCourseNumber = new ConcurrentHashMap<>();
+            for (Subject existing : subjects) {
+                byName.putIfAbsent(existing.getName(), existing);
+                if (existing.getCourseNumber() != null) {
+                    byCourseNumber.putIfAbsent(existing.getCourseNumber(), existing);
+                }
+            }
+            subjectsByCourseNumber = byCourseNumber;
+            subjectsByName = byName;
+        }
     }
 
     public void removeSubject(Subject subject) {
+        loadSubjects();
         subjects.remove(subject);
+        subject.releaseGrade();
+        if (subjectsByName != null) {
+            unindexSubject(subject);
+        }
     }
 
-    public void inputGrades(String subjectName, double prelims, double midterms, double finals) {
-        for (Subject subject : subjects) {
-            if (subject.getName().equals(subjectName)) {
-                subject.setPrelims(prelims);
-                subject.setMidterms(midterms);
-                subject.setFinals(finals);
-                double finalRating = (0.30 * prelims) + (0.30 * midterms) + (0.40 * finals);
-                subject.setFinalRating(finalRating);
-                break;
+    // Changes a subject's details in a way the course number map can follow
+    public void updateSubject(Subject subject, String courseNumber, String instructorName) {
+        loadSubjects();
+        if (subjectsByName != null) {
+            unindexSubject(subject);
+        }
+        subject.setCourseNumber(courseNumber);
+        subject.setInstructorName(instructorName);
+        if (subjectsByName != null) {
+            indexSubject(subject);
+        }
+    }
+
+    // The first subject with a given name or course number wins, as with a front-to-back scan
+    private void indexSubject(Subject subject) {
+        subjectsByName.putIfAbsent(subject.getName(), subject);
+        if (subject.getCourseNumber() != null) {
+            subjectsByCourseNumber.putIfAbsent(subject.getCourseNumber(), subject);
+        }
+    }
+
+    private void unindexSubject(Subject subject) {
+        if (subjectsByName.remove(subject.getName(), subject)) {
+            for (Subject other : subjects) {
+                if (other != subject && other.getName().equals(subject.getName())) {
+                    subjectsByName.put(other.getName(), other);
+                    break;
+                }
+            }
+        }
+        if (subject.getCourseNumber() != null && subjectsByCourseNumber.remove(subject.getCourseNumber(), subject)) {
+            for (Subject other : subjects) {
+                if (other != subject && subject.getCourseNumber().equals(other.getCourseNumber())) {
+                    subjectsByCourseNumber.put(other.getCourseNumber(), other);
+                    break;
+                }
             }
         }
     }
 
+    LazySubjectLoader.Pending pendingSubjects() {
+        return pendingSubjects;
+    }
+
+    void setPendingSubjects(LazySubjectLoader.Pending pending) {
+        pendingSubjects = pending;
+    }
+
+    // Called by LazySubjectLoader with the subjects parsed from the files; they are in place
+    // before the pending marker is cleared, so no reader sees a partial list
+    void attachLoadedSubjects(List<Subject> loaded) {
+        subjects.ensureCapacity(subjects.size() + loaded.size());
+        for (Subject subject : loaded) {
+            appendSubject(subject);
+        }
+        pendingSubjects = null;
+    }
+
+    private void loadSubjects() {
+        LazySubjectLoader.Pending pending = pendingSubjects;
+        if (pending != null) {
+            pending.load(this);
+        }
+    }
+
+    // Frees the grade slots of every subject once the student is deleted
+    public void releaseGrades() {
+        loadSubjects();
+        for (Subject subject : subjects) {
+            subject.releaseGrade();
+        }
+    }
+
+    public void inputGrades(String subjectName, int prelims, int midterms, int finals) {
+        loadSubjects();
+        Subject subject = getSubject(subjectName);
+        if (subject != null) {
+            double finalRating = (0.30 * prelims) + (0.30 * midterms) + (0.40 * finals);
+            subject.setGrade(new Grade(prelims, midterms, finals, finalRating));
+        }
+    }
+
     public void displaySubjects() {
+        loadSubjects();
         System.out.println("Subjects:");
         for (Subject subject : subjects) {
             System.out.printf("%s - Prelims: %.2f, Midterms: %.2f, Finals: %.2f, Final Rating: %.2f\n",
@@ -124,12 +260,12 @@ class Student {
                 "First Name: " + firstName + "\n" +
                 "Middle Name: " + middleName + "\n" +
                 "Address: " + address + "\n" +
-                "Gender: " + gender + "\n" +
+                "Gender: " + getGender() + "\n" +
                 "Phone Number: " + phoneNumber + "\n" +
                 "Email Address: " + emailAddress + "\n" +
-                "Date of Birth: " + dateOfBirth + "\n" +
-                "Course: " + course + "\n" +
-                "Date of Enrollment: " + dateOfEnrollment;
+                "Date of Birth: " + getDateOfBirth() + "\n" +
+                "Course: " + getCourse() + "\n" +
+                "Date of Enrollment: " + getDateOfEnrollment();
     }
 
     public void setLastName(String lastName) {
@@ -149,7 +285,7 @@ class Student {
     }
 
     public void setGender(String gender) {
-        this.gender = gender;
+        this.gender = StringDictionary.GENDERS.encode(gender);
     }
 
     public void setPhoneNumber(String phoneNumber) {
@@ -161,18 +297,23 @@ class Student {
     }
 
     public void setDateOfBirth(String dateOfBirth) {
-        this.dateOfBirth = dateOfBirth;
+        this.dateOfBirth = StringDictionary.DATES_OF_BIRTH.encode(dateOfBirth);
     }
 
     public void setCourse(String course) {
-        this.course = course;
+        this.course = StringDictionary.COURSES.encode(course);
     }
 
     public void setDateOfEnrollment(String dateOfEnrollment) {
-        this.dateOfEnrollment = dateOfEnrollment;
+        this.dateOfEnrollment = StringDictionary.ENROLLMENT_DATES.encode(dateOfEnrollment);
     }
 
     public Subject getSubjectByCourseNumber(String courseNumber) {
+        loadSubjects();
+        Map<String, Subject> byCourseNumber = subjectsByCourseNumber;
+        if (byCourseNumber != null) {
+            return byCourseNumber.get(courseNumber);
+        }
         for (Subject subject : subjects) {
             if (subject.getCourseNumber().equals(courseNumber)) {
                 return subject;
@@ -184,95 +325,157 @@ class Student {
 }
 
 class Subject {
-    private String name;
-    private String courseNumber;
-    private String instructorName;
-    private double prelims;
-    private double midterms;
-    private double finals;
-    private double finalRating;
-    private Grade grade;
-
+    // StringDictionary codes; the same subjects and instructors recur for every student
+    private int name;
+    private int courseNumber;
+    private int instructorName;
+    // Handle of this subject's grade slot in GradeColumns, or -1 while it has no grade
+    private volatile long gradeHandle = -1;
+    // The scores as they were when the slot was released, for readers still holding the subject
+    private volatile Grade releasedGrade;
+
+    // Copies the scores into this subject's own slot; the Grade passed in stays the caller's
     public void setGrade(Grade grade) {
-        this.grade = grade;
+        long handle = gradeHandle;
+        if (grade == null) {
+            releaseGrade();
+            gradeHandle = -1;
+            releasedGrade = null;
+        } else if (handle >= 0 && releasedGrade == null) {
+            GradeColumns.INSTANCE.set(handle, grade.getPrelims(), grade.getMidterms(), grade.getFinals(),
+                    grade.getFinalRating());
+        } else {
+            gradeHandle = GradeColumns.INSTANCE.allocate(grade.getPrelims(), grade.getMidterms(), grade.getFinals(),
+                    grade.getFinalRating());
+            releasedGrade = null;
+        }
+    }
+
+    // Gives the slot back once the subject or its student is deleted. The last scores stay
+    // readable through getGrade, so a reader that still holds the subject never sees the scores
+    // of whichever subject the slot goes to next.
+    void releaseGrade() {
+        long handle = gradeHandle;
+        if (handle >= 0 && releasedGrade == null) {
+            releasedGrade = getGrade();
+            GradeColumns.INSTANCE.release(handle);
+        }
     }
 
     public Subject(String name, String courseNumber, String instructorName) {
-        this.name = name;
-        this.courseNumber = courseNumber;
-        this.instructorName = instructorName;
+        this.name = StringDictionary.SUBJECT_NAMES.encode(name);
+        this.courseNumber = StringDictionary.COURSE_NUMBERS.encode(courseNumber);
+        this.instructorName = StringDictionary.INSTRUCTORS.encode(instructorName);
     }
 
+    // A copy of the scores; changing it changes nothing until it is passed to setGrade
     public Grade getGrade() {
-        return grade;
+        long handle = gradeHandle;
+        if (handle < 0) {
+            return null;
+        }
+        GradeColumns columns = GradeColumns.INSTANCE;
+        Grade grade = new Grade(columns.getPrelims(handle), columns.getMidterms(handle), columns.getFinals(handle),
+                columns.getFinalRating(handle));
+        return columns.isCurrent(handle) ? grade : releasedGrade;
     }
 
     public Subject(String name) {
-        this.name = name;
+        this(name, null, null);
+    }
+
+    Subject copy() {
+        Subject copy = new Subject(null);
+        copy.name = name;
+        copy.courseNumber = courseNumber;
+        copy.instructorName = instructorName;
+        copy.setGrade(getGrade());
+        return copy;
     }
 
     public void setName(String name) {
-        this.name = name;
+        this.name = StringDictionary.SUBJECT_NAMES.encode(name);
     }
 
     public String getName() {
-        return name;
+        return StringDictionary.SUBJECT_NAMES.decode(name);
     }
 
+    // The score accessors below go through this subject's grade, which keeps scores in whole
+    // points; the setters take ints so callers round for themselves
     public double getPrelims() {
-        return prelims;
+        Grade grade = getGrade();
+        return grade == null ? 0 : grade.getPrelims();
     }
 
-    public void setPrelims(double prelims) {
-        this.prelims = prelims;
+    public void setPrelims(int prelims) {
+        Grade grade = gradeOrZero();
+        grade.setPrelims(prelims);
+        setGrade(grade);
     }
 
     public double getMidterms() {
-        return midterms;
+        Grade grade = getGrade();
+        return grade == null ? 0 : grade.getMidterms();
     }
 
-    public void setMidterms(double midterms) {
-        this.midterms = midterms;
+    public void setMidterms(int midterms) {
+        Grade grade = gradeOrZero();
+        grade.setMidterms(midterms);
+        setGrade(grade);
     }
 
     public double getFinals() {
-        return finals;
+        Grade grade = getGrade();
+        return grade == null ? 0 : grade.getFinals();
     }
 
-    public void setFinals(double finals) {
-        this.finals = finals;
+    public void setFinals(int finals) {
+        Grade grade = gradeOrZero();
+        grade.setFinals(finals);
+        setGrade(grade);
     }
 
     public double getFinalRating() {
-        return finalRating;
+        Grade grade = getGrade();
+        return grade == null ? 0 : grade.getFinalRating();
     }
 
     public void setFinalRating(double finalRating) {
-        this.finalRating = finalRating;
+        Grade grade = gradeOrZero();
+        grade.setFinalRating(finalRating);
+        setGrade(grade);
+    }
+
+    private Grade gradeOrZero() {
+        Grade grade = getGrade();
+        return grade != null ? grade : new Grade(0, 0, 0, 0);
     }
 
     public String getCourseNumber() {
-        return courseNumber;
+        return StringDictionary.COURSE_NUMBERS.decode(courseNumber);
     }
 
     public void setCourseNumber(String courseNumber) {
-        this.courseNumber = courseNumber;
+        this.courseNumber = StringDictionary.COURSE_NUMBERS.encode(courseNumber);
     }
 
     public String getInstructorName() {
-        return instructorName;
+        return StringDictionary.INSTRUCTORS.decode(instructorName);
     }
 
     public void setInstructorName(String instructorName) {
-        this.instructorName = instructorName;
+        this.instructorName = StringDictionary.INSTRUCTORS.encode(instructorName);
     }
 
     @Override
     public String toString() {
-        return name;
+        return getName();
     }
 }
 
+// The scores of one grade. Subjects keep theirs in GradeColumns; a Grade is a copy taken out
+// with Subject.getGrade or handed in with Subject.setGrade.
 class Grade {
     private int prelims;
     private int midterms;
@@ -280,10 +483,7 @@ class Grade {
     private double finalRating;
 
     public Grade(int prelims, int midterms, int finals) {
-        this.prelims = prelims;
-        this.midterms = midterms;
-        this.finals = finals;
-        this.finalRating = computeFinalRating(prelims, midterms, finals);
+        this(prelims, midterms, finals, computeFinalRating(prelims, midterms, finals));
     }
 
     public Grade(int prelims, int midterms, int finals, double finalRating) {
@@ -325,10 +525,10 @@ class Grade {
         this.finalRating = finalRating;
     }
 
-    private double computeFinalRating(int prelims, int midterms, int finals) {
+    private static double computeFinalRating(int prelims, int midterms, int finals) {
         double weightedPrelims = prelims * 0.30;
         double weightedMidterms = midterms * 0.30;
         double weightedFinals = finals * 0.40;
         return weightedPrelims + weightedMidterms + weightedFinals;
     }
-}
\ No newline at end of file
+}
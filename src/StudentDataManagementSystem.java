@@ -1,29 +1,127 @@
 import java.io.*;
+import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Scanner;
-import java.util.Arrays;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 public class StudentDataManagementSystem {
-    private static final String STUDENT_FILE = "Student/src/students.csv";
-    private static final String SUBJECT_FILE = "Student/src/subjects.csv";
-    private static final String GRADE_FILE = "Student/src/grades.csv";
+    private static final String DATA_DIR = System.getProperty("sdms.dataDir", "Student/src");
+    private static final String STUDENT_FILE = DATA_DIR + "/students.csv";
+    private static final String SUBJECT_FILE = DATA_DIR + "/subjects.csv";
+    private static final String GRADE_FILE = DATA_DIR + "/grades.csv";
+    private static final String JOURNAL_FILE = DATA_DIR + "/journal.log";
+    private static final String CHANGES_DIR = DATA_DIR + "/changes";
+    private static final String SNAPSHOT_FILE = DATA_DIR + "/students.snapshot";
+    // IDs of deleted students, one per line, never handed out again
+    private static final String RETIRED_FILE = DATA_DIR + "/retired_ids.csv";
+    // Journal size at which edits are folded back into the CSV files
+    private static final int CHECKPOINT_RECORDS = 10000;
     private static final int PAGE_SIZE = 10;
-    private static final String EMAIL_REGEX = "^[^\\.][a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$";
-    private static final String DOB_REGEX = "^(0?[1-9]|[12][0-9]|3[01])[- \\/.](0?[1-9]|1[012])[- \\/.](19|20)\\d\\d$";
-    private static final String ENROLLMENT_DATE_REGEX = "^(0?[1-9]|1[0-2])/(0?[1-9]|[12][0-9]|3[01])/2023$";
-    private static final String PHONE_NUMBER_REGEX = "\\d{10}";
-    private static List<Student> students = new ArrayList<>();
+    private static final int DUMP_PAGE_SIZE = 1000;
+    private static final int FUZZY_SEARCH_LIMIT = 10;
+    private static final int QUERY_DISPLAY_LIMIT = 100;
+    private static final int TAIL_BATCH = 1000;
+    private static final long TAIL_POLL_MILLIS = 500;
+    private static final int ENROLLMENT_YEAR = 2023;
+    // The roster with its ID and name indexes; safe to read from the query server's threads
+    private static final StudentRepository repository = new StudentRepository();
+    private static Journal journal = new Journal(JOURNAL_FILE);
+    // Every journaled edit, kept across checkpoints for other systems to follow
+    private static final ChangeFeed changes = new ChangeFeed(CHANGES_DIR);
+    // Journals edits in the background, at most sdms.flush.millis after they are made or once
+    // sdms.flush.records are waiting; 0 millis journals each edit before the menu continues
+    private static final Flusher flusher = new Flusher(Long.getLong("sdms.flush.millis", 100),
+            Integer.getInteger("sdms.flush.records", 1000), StudentDataManagementSystem::recordKey,
+            StudentDataManagementSystem::writeRecords, StudentDataManagementSystem::checkpointIfLarge);
     private static Scanner scanner = new Scanner(System.in);
+    // Set in lazy mode until every student's subjects have been parsed
+    private static LazySubjectLoader lazySubjects;
+    // grades.csv lines without a loaded student or subject to take them, written back at every
+    // checkpoint so saving never drops them
+    private static final Queue<String> unmatchedGrades = new ConcurrentLinkedQueue<>();
+    // Set when replaying the journal could not add its edits to the change feed; the journal then
+    // outlives checkpoints so the next start can
+    private static volatile boolean feedMissesReplayed;
+    // Set for --serve and --dump, which only read the data folder, so they can run beside the menu:
+    // loading leaves the journal and the change feed as they are and nothing is checkpointed
+    private static boolean readOnly;
+    private static final Writer console = new OutputStreamWriter(System.out);
 
     public static void main(String[] args) {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            saveGrades();
-        }));
+        if (args.length > 0 && args[0].equals("--import")) {
+            if (args.length != 2) {
+                System.out.println("Usage: java StudentDataManagementSystem --import <file>");
+                return;
+            }
+            saveOnShutdown();
+            loadStudents();
+            try {
+                importStudents(args[1]);
+            } catch (UncheckedIOException e) {
+                System.out.println("Error writing edits: " + e.getMessage());
+                System.out.println("The imported records could not be saved.");
+                System.exit(1);
+            }
+            flushAndCheckpoint();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            if (args.length != 2) {
+                System.out.println("Usage: java StudentDataManagementSystem --serve <port>");
+                return;
+            }
+            // The response headers and body go out as separate writes; without TCP_NODELAY the body
+            // waits for the client's delayed ACK and every request takes about 40 ms
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+            readOnly = true;
+            loadStudents();
+            try {
+                // Loopback unless another interface is asked for, as the server has no authentication
+                String host = System.getProperty("sdms.serve.host");
+                InetAddress address = host == null ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+                QueryServer server = new QueryServer(repository, changes, address, Integer.parseInt(args[1]));
+                server.start();
+                System.out.printf("Serving %d students on %s port %d.%n", repository.size(),
+                        address.getHostAddress(), server.port());
+            } catch (IOException e) {
+                System.out.println("Error starting server: " + e.getMessage());
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--dump")) {
+            if (args.length > 2) {
+                System.out.println("Usage: java StudentDataManagementSystem --dump [file]");
+                return;
+            }
+            readOnly = true;
+            loadStudents();
+            dumpStudents(args.length == 2 ? args[1] : null);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--tail")) {
+            if (args.length > 2) {
+                System.out.println("Usage: java StudentDataManagementSystem --tail [from sequence number]");
+                return;
+            }
+            try {
+                tailChanges(args.length == 2 ? Long.parseLong(args[1]) : 1);
+            } catch (NumberFormatException e) {
+                System.out.println("The sequence number must be a whole number.");
+            }
+            return;
+        }
+        saveOnShutdown();
         loadStudents();
         displayDateTime();
         System.out.println("\u001B[32mWelcome to Student Data Management System!\u001B[0m");
@@ -32,7 +130,8 @@ public class StudentDataManagementSystem {
             System.out.println("\u001B[36m[1] Show Students\u001B[0m");
             System.out.println("\u001B[36m[2] Add Students\u001B[0m");
             System.out.println("\u001B[36m[3] Search Students\u001B[0m");
-            System.out.println("\u001B[31m[4] Exit\u001B[0m");
+            System.out.println("\u001B[36m[4] Grade Reports\u001B[0m");
+            System.out.println("\u001B[31m[5] Exit\u001B[0m");
             int choice = inputInt("Enter choice: ");
             switch (choice) {
                 case 1:
@@ -45,7 +144,13 @@ public class StudentDataManagementSystem {
                     searchStudent();
                     break;
                 case 4:
-                    saveStudents();
+                    showGradeReport();
+                    break;
+                case 5:
+                    if (!flushAndCheckpoint()) {
+                        System.out.println("Your latest edits could not be saved yet. Exit again to retry.");
+                        break;
+                    }
                     clearScreen();
                     System.out.println("\u001B[32mThanks for using the program!\u001B[0m");
                     System.exit(0);
@@ -144,226 +249,204 @@ public class StudentDataManagementSystem {
     }
 
     private static void showStudentByPage() {
-        int numPages = (int) Math.ceil(students.size() / (double) PAGE_SIZE);
+        StudentOrder order = inputSortOrder();
+        int numPages = (int) Math.ceil(repository.size() / (double) PAGE_SIZE);
         int page = inputInt(String.format("Enter page no (1-%d): ", numPages));
-        if (page >= 1 && page <= numPages) {
-            int start = (page - 1) * PAGE_SIZE;
-            int end = Math.min(start + PAGE_SIZE, students.size());
-
-            // Define the column widths
-            int idWidth = 7;
-            int lastNameWidth = 15;
-            int firstNameWidth = 15;
-            int middleNameWidth = 15;
-            int addressWidth = 27;
-            int genderWidth = 6;
-            int phoneNumberWidth = 12;
-            int emailAddressWidth = 33;
-            int dateOfBirthWidth = 13;
-            int courseWidth = 6;
-            int dateOfEnrollmentWidth = 18;
-
-            // Print table headers
-            System.out.format("+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+\n",
-                    "-".repeat(idWidth + 2), "-".repeat(lastNameWidth + 2), "-".repeat(firstNameWidth + 2),
-                    "-".repeat(middleNameWidth + 2),
-                    "-".repeat(addressWidth + 2), "-".repeat(genderWidth + 2), "-".repeat(phoneNumberWidth + 2),
-                    "-".repeat(emailAddressWidth + 2),
-                    "-".repeat(dateOfBirthWidth + 2), "-".repeat(courseWidth + 2),
-                    "-".repeat(dateOfEnrollmentWidth + 2));
-            System.out.format(
-                    "| %-" + idWidth + "s | %-" + lastNameWidth + "s | %-" + firstNameWidth + "s | %-" + middleNameWidth
-                            + "s | %-" + addressWidth + "s | %-" + genderWidth + "s | %-" + phoneNumberWidth + "s | %-"
-                            + emailAddressWidth + "s | %-" + dateOfBirthWidth + "s | %-" + courseWidth + "s | %-"
-                            + dateOfEnrollmentWidth + "s |\n",
-                    "ID", "Last Name", "First Name", "Middle Name", "Address", "Gender", "Phone Number",
-                    "Email Address",
-                    "Date of Birth", "Course", "Date of Enrollment");
-            System.out.format("+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+\n",
-                    "-".repeat(idWidth + 2), "-".repeat(lastNameWidth + 2), "-".repeat(firstNameWidth + 2),
-                    "-".repeat(middleNameWidth + 2),
-                    "-".repeat(addressWidth + 2), "-".repeat(genderWidth + 2), "-".repeat(phoneNumberWidth + 2),
-                    "-".repeat(emailAddressWidth + 2),
-                    "-".repeat(dateOfBirthWidth + 2), "-".repeat(courseWidth + 2),
-                    "-".repeat(dateOfEnrollmentWidth + 2));
-
-            // Print student info for current page
-            for (int i = start; i < end; i++) {
-                Student student = students.get(i);
-                System.out.format(
-                        "| %-" + idWidth + "s | %-" + lastNameWidth + "s | %-" + firstNameWidth + "s | %-"
-                                + middleNameWidth + "s | %-" + addressWidth + "s | %-" + genderWidth + "s | %-"
-                                + phoneNumberWidth + "s | %-" + emailAddressWidth + "s | %-" + dateOfBirthWidth
-                                + "s | %-" + courseWidth + "s | %-" + dateOfEnrollmentWidth + "s |\n",
-                        student.getId(), student.getLastName(), student.getFirstName(),
-                        student.getMiddleName(), student.getAddress(), student.getGender(),
-                        student.getPhoneNumber(), student.getEmailAddress(), student.getDateOfBirth(),
-                        student.getCourse(), student.getDateOfEnrollment());
-            }
-
-            // Print table footer
-            System.out.format("+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+\n",
-                    "-".repeat(idWidth + 2), "-".repeat(lastNameWidth + 2), "-".repeat(firstNameWidth + 2),
-                    "-".repeat(middleNameWidth + 2),
-                    "-".repeat(addressWidth + 2), "-".repeat(genderWidth + 2), "-".repeat(phoneNumberWidth + 2),
-                    "-".repeat(emailAddressWidth + 2),
-                    "-".repeat(dateOfBirthWidth + 2), "-".repeat(courseWidth + 2),
-                    "-".repeat(dateOfEnrollmentWidth + 2));
+        if (page < 1 || page > numPages) {
+            return;
+        }
+        // Reaching the chosen page walks the pages before it once; every move after that
+        // follows a cursor and only reads the page itself
+        StudentRepository.Page current = repository.pageAt(order, page, PAGE_SIZE);
+        while (true) {
+            printStudentTable(current.students);
+            numPages = Math.max(page, (int) Math.ceil(repository.size() / (double) PAGE_SIZE));
+            boolean hasPrevious = current.previousCursor != null;
+            boolean hasNext = current.nextCursor != null;
 
             // Print pagination options
             System.out.format("Page %d of %d\n", page, numPages);
-            if (page == 1) {
-                System.out.println("Select an option:");
-                System.out.println("\u001B[36m[1] Next page\u001B[0m");
-                System.out.println("\u001B[31m[2] Back\u001B[0m");
-            } else if (page == numPages) {
-                System.out.println("\u001B[36m[1] Previous page\u001B[0m");
-                System.out.println("\u001B[31m[2] Back\u001B[0m");
-            } else {
-                System.out.println("\u001B[36m[1] Previous page\u001B[0m");
-                System.out.println("\u001B[36m[2] Next page\u001B[0m");
-                System.out.println("\u001B[31m[3] Back\u001B[0m");
+            System.out.println("Select an option:");
+            int option = 1;
+            int previousOption = hasPrevious ? option++ : -1;
+            int nextOption = hasNext ? option++ : -1;
+            int backOption = option;
+            if (hasPrevious) {
+                System.out.printf("\u001B[36m[%d] Previous page\u001B[0m%n", previousOption);
+            }
+            if (hasNext) {
+                System.out.printf("\u001B[36m[%d] Next page\u001B[0m%n", nextOption);
             }
+            System.out.printf("\u001B[31m[%d] Back\u001B[0m%n", backOption);
 
             // Get user choice and navigate to the corresponding page
             int choice = inputInt("Enter your choice: ");
-            switch (choice) {
-                case 1:
-                    if (page == 1) {
-                        showStudentByPageWithOptions(page + 1);
-                    } else {
-                        showStudentByPageWithOptions(page - 1);
-                    }
-                    break;
-                case 2:
-                    if (page == 1 || page == numPages) {
-                        clearScreen();
-                        showStudents();
-                        break;
-                    }
-                    showStudentByPageWithOptions(page + 1);
-                    break;
-                case 3:
-                    clearScreen();
-                    showStudents();
-                    break;
-                default:
-                    System.out.println("Invalid choice!");
-                    break;
+            if (choice == previousOption) {
+                current = repository.pageBefore(order, current.previousCursor, PAGE_SIZE);
+                page--;
+            } else if (choice == nextOption) {
+                current = repository.pageAfter(order, current.nextCursor, PAGE_SIZE);
+                page++;
+            } else if (choice == backOption) {
+                clearScreen();
+                showStudents();
+                return;
+            } else {
+                System.out.println("Invalid choice!");
+                return;
             }
         }
     }
 
-    private static void showStudentByPageWithOptions(int currentPage) {
-        int numPages = (int) Math.ceil(students.size() / (double) PAGE_SIZE);
-        int page = currentPage;
-        if (page >= 1 && page <= numPages) {
-            currentPage = page;
-            int start = (page - 1) * PAGE_SIZE;
-            int end = Math.min(start + PAGE_SIZE, students.size());
-
-            // Define the column widths
-            int idWidth = 7;
-            int lastNameWidth = 15;
-            int firstNameWidth = 15;
-            int middleNameWidth = 15;
-            int addressWidth = 27;
-            int genderWidth = 6;
-            int phoneNumberWidth = 12;
-            int emailAddressWidth = 33;
-            int dateOfBirthWidth = 13;
-            int courseWidth = 6;
-            int dateOfEnrollmentWidth = 18;
-
-            // Print table headers
-            System.out.format("+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+\n",
-                    "-".repeat(idWidth + 2), "-".repeat(lastNameWidth + 2), "-".repeat(firstNameWidth + 2),
-                    "-".repeat(middleNameWidth + 2),
-                    "-".repeat(addressWidth + 2), "-".repeat(genderWidth + 2), "-".repeat(phoneNumberWidth + 2),
-                    "-".repeat(emailAddressWidth + 2),
-                    "-".repeat(dateOfBirthWidth + 2), "-".repeat(courseWidth + 2),
-                    "-".repeat(dateOfEnrollmentWidth + 2));
-            System.out.format(
-                    "| %-" + idWidth + "s | %-" + lastNameWidth + "s | %-" + firstNameWidth + "s | %-" + middleNameWidth
-                            + "s | %-" + addressWidth + "s | %-" + genderWidth + "s | %-" + phoneNumberWidth + "s | %-"
-                            + emailAddressWidth + "s | %-" + dateOfBirthWidth + "s | %-" + courseWidth + "s | %-"
-                            + dateOfEnrollmentWidth + "s |\n",
-                    "ID", "Last Name", "First Name", "Middle Name", "Address", "Gender", "Phone Number",
-                    "Email Address",
-                    "Date of Birth", "Course", "Date of Enrollment");
-            System.out.format("+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+\n",
-                    "-".repeat(idWidth + 2), "-".repeat(lastNameWidth + 2), "-".repeat(firstNameWidth + 2),
-                    "-".repeat(middleNameWidth + 2),
-                    "-".repeat(addressWidth + 2), "-".repeat(genderWidth + 2), "-".repeat(phoneNumberWidth + 2),
-                    "-".repeat(emailAddressWidth + 2),
-                    "-".repeat(dateOfBirthWidth + 2), "-".repeat(courseWidth + 2),
-                    "-".repeat(dateOfEnrollmentWidth + 2));
-
-            // Print student info for current page
-            for (int i = start; i < end; i++) {
-                Student student = students.get(i);
-                System.out.format(
-                        "| %-" + idWidth + "s | %-" + lastNameWidth + "s | %-" + firstNameWidth + "s | %-"
-                                + middleNameWidth + "s | %-" + addressWidth + "s | %-" + genderWidth + "s | %-"
-                                + phoneNumberWidth + "s | %-" + emailAddressWidth + "s | %-" + dateOfBirthWidth
-                                + "s | %-" + courseWidth + "s | %-" + dateOfEnrollmentWidth + "s |\n",
-                        student.getId(), student.getLastName(), student.getFirstName(),
-                        student.getMiddleName(), student.getAddress(), student.getGender(),
-                        student.getPhoneNumber(), student.getEmailAddress(), student.getDateOfBirth(),
-                        student.getCourse(), student.getDateOfEnrollment());
-            }
+    private static StudentOrder inputSortOrder() {
+        System.out.println("Sort by:");
+        System.out.println("\u001B[36m[1] ID\u001B[0m");
+        System.out.println("\u001B[36m[2] Last Name\u001B[0m");
+        System.out.println("\u001B[36m[3] Date of Enrollment\u001B[0m");
+        switch (inputInt("Enter choice: ")) {
+            case 2:
+                return StudentOrder.LAST_NAME;
+            case 3:
+                return StudentOrder.ENROLLMENT_DATE;
+            default:
+                return StudentOrder.ID;
+        }
+    }
 
-            // Print table footer
-            System.out.format("+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+%s+\n",
-                    "-".repeat(idWidth + 2), "-".repeat(lastNameWidth + 2), "-".repeat(firstNameWidth + 2),
-                    "-".repeat(middleNameWidth + 2),
-                    "-".repeat(addressWidth + 2), "-".repeat(genderWidth + 2), "-".repeat(phoneNumberWidth + 2),
-                    "-".repeat(emailAddressWidth + 2),
-                    "-".repeat(dateOfBirthWidth + 2), "-".repeat(courseWidth + 2),
-                    "-".repeat(dateOfEnrollmentWidth + 2));
+    private static void printStudentTable(List<Student> students) {
+        TableRenderer table = new TableRenderer(console, TableRenderer.STUDENTS).header();
+        for (Student student : students) {
+            studentRow(table, student);
+        }
+        table.footer().flush();
+    }
 
-            // Print pagination options
-            System.out.format("Page %d of %d\n", page, numPages);
-            if (page == 1) {
-                System.out.println("Select an option:");
-                System.out.println("\u001B[36m[1] Next page\u001B[0m");
-                System.out.println("\u001B[31m[2] Back\u001B[0m");
-            } else if (page == numPages) {
-                System.out.println("\u001B[36m[1] Previous page\u001B[0m");
-                System.out.println("\u001B[31m[2] Back\u001B[0m");
-            } else {
-                System.out.println("\u001B[36m[1] Previous page\u001B[0m");
-                System.out.println("\u001B[36m[2] Next page\u001B[0m");
-                System.out.println("\u001B[31m[3] Back\u001B[0m");
-            }
+    private static void studentRow(TableRenderer table, Student student) {
+        table.cell(student.getId()).cell(student.getLastName()).cell(student.getFirstName())
+                .cell(student.getMiddleName()).cell(student.getAddress()).cell(student.getGender())
+                .cell(student.getPhoneNumber()).cell(student.getEmailAddress()).cell(student.getDateOfBirth())
+                .cell(student.getCourse()).cell(student.getDateOfEnrollment()).endRow();
+    }
 
-            // Get user choice and navigate to the corresponding page
-            int choice = inputInt("Enter your choice: ");
-            switch (choice) {
-                case 1:
-                    if (page == 1) {
-                        showStudentByPageWithOptions(page + 1);
-                    } else {
-                        showStudentByPageWithOptions(page - 1);
-                    }
-                    break;
-                case 2:
-                    if (page == 1 || page == numPages) {
-                        clearScreen();
-                        showStudents();
-                        break;
-                    }
-                    showStudentByPageWithOptions(page + 1);
-                    break;
-                case 3:
-                    clearScreen();
-                    showStudents();
-                    break;
-                default:
-                    System.out.println("Invalid choice!");
+    // Prints every student in ID order as one table, a page of the order at a time, to the file
+    // or to standard output when no file is given
+    static void dumpStudents(String fileName) {
+        OutputStream stream = null;
+        try {
+            stream = fileName == null ? new FileOutputStream(FileDescriptor.out) : new FileOutputStream(fileName);
+            Writer writer = new OutputStreamWriter(new BufferedOutputStream(stream, 1 << 16));
+            TableRenderer table = new TableRenderer(writer, TableRenderer.STUDENTS).header();
+            StudentRepository.Page page = repository.pageAfter(StudentOrder.ID, null, DUMP_PAGE_SIZE);
+            while (true) {
+                for (Student student : page.students) {
+                    studentRow(table, student);
+                }
+                if (page.nextCursor == null) {
                     break;
+                }
+                page = repository.pageAfter(StudentOrder.ID, page.nextCursor, DUMP_PAGE_SIZE);
+            }
+            table.footer().flush();
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("Error writing students: " + e.getMessage());
+        } finally {
+            if (fileName != null && stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    System.out.println("Error writing students: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Prints each change from the sequence number on as "<seq> <type>,<fields>", then keeps
+    // polling for new ones like tail -f. Only reads the feed's files, so it can run beside the
+    // program making the edits.
+    static void tailChanges(long from) {
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), false);
+        ChangeFeed.Cursor cursor = changes.cursor(from);
+        try {
+            while (true) {
+                List<ChangeFeed.Change> batch = cursor.next(TAIL_BATCH);
+                for (ChangeFeed.Change change : batch) {
+                    out.println(change.seq + " " + change.record);
+                }
+                out.flush();
+                if (batch.size() < TAIL_BATCH) {
+                    Thread.sleep(TAIL_POLL_MILLIS);
+                }
             }
+        } catch (IOException e) {
+            System.out.println("Error reading change feed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Final rating statistics grouped one way, from the statistics the repository keeps current,
+    // so no grade is read again
+    private static void showGradeReport() {
+        System.out.println("Group by:");
+        System.out.println("\u001B[36m[1] Subject\u001B[0m");
+        System.out.println("\u001B[36m[2] Course Number\u001B[0m");
+        System.out.println("\u001B[36m[3] Instructor\u001B[0m");
+        System.out.println("\u001B[36m[4] Course\u001B[0m");
+        System.out.println("\u001B[36m[5] Top Students by GWA\u001B[0m");
+        System.out.println("\u001B[31m[6] Back\u001B[0m");
+        int choice = inputInt("Enter choice: ");
+        if (choice < 1 || choice > 6) {
+            System.out.println("Invalid choice. Try again.");
+            return;
+        }
+        if (choice == 5) {
+            showTopStudents();
+            return;
+        }
+        if (choice == 6) {
+            clearScreen();
+            return;
+        }
+        GradeStatistics statistics = repository.statistics();
+        TableRenderer table = new TableRenderer(console, TableRenderer.GRADE_REPORT).header();
+        for (Map.Entry<String, GradeStatistics.Summary> group : statistics
+                .summaries(GradeStatistics.Dimension.values()[choice - 1]).entrySet()) {
+            summaryRow(table.cell(group.getKey()), group.getValue());
+        }
+        table.footer();
+        summaryRow(table.cell("All"), statistics.overall());
+        table.footer().flush();
+    }
+
+    // Dean's list style ranking of one course or of every course
+    private static void showTopStudents() {
+        String course = inputString("Course (blank for all courses):").trim();
+        int count = inputInt("Number of students: ");
+        if (count < 1) {
+            System.out.println("Invalid number of students.");
+            return;
+        }
+        List<Rankings.Ranked> top = repository.rankings().top(course.isEmpty() ? null : course, count);
+        if (top.isEmpty()) {
+            System.out.println("No graded students found.");
+            return;
+        }
+        TableRenderer table = new TableRenderer(console, TableRenderer.RANKING).header();
+        for (Rankings.Ranked ranked : top) {
+            Student student = ranked.student;
+            table.cell(ranked.rank).cell(student.getId()).cell(student.getLastName()).cell(student.getFirstName())
+                    .cell(student.getCourse()).cell(ranked.gwa).endRow();
+        }
+        table.footer().flush();
+    }
+
+    private static void summaryRow(TableRenderer table, GradeStatistics.Summary summary) {
+        table.cell(summary.count).cell(summary.mean).cell(summary.median).cell(summary.p25).cell(summary.p75)
+                .cell(summary.p90).cell(summary.passRate * 100);
+        for (int band : summary.bands) {
+            table.cell(band);
         }
+        table.endRow();
     }
 
     private static void showStudentSubjects(Student student) {
@@ -371,6 +454,11 @@ public class StudentDataManagementSystem {
         for (Subject subject : student.getSubjects()) {
             System.out.println(subject);
         }
+        Rankings.Ranked ranked = repository.rankings().rankOf(student, true);
+        if (ranked != null) {
+            System.out.printf("GWA: %.2f, rank %d of %d in %s%n", ranked.gwa, ranked.rank, ranked.of,
+                    student.getCourse());
+        }
     }
 
     private static void addStudent() {
@@ -378,7 +466,7 @@ public class StudentDataManagementSystem {
         String lastName;
         while (true) {
             lastName = inputString("Last name: ");
-            if (lastName.matches("^[A-Z][a-zA-Z]*$")) {
+            if (Validators.name(lastName).isValid()) {
                 break;
             } else {
                 System.out.println(
@@ -389,7 +477,7 @@ public class StudentDataManagementSystem {
         String firstName;
         while (true) {
             firstName = inputString("First name: ");
-            if (firstName.matches("^[A-Z][a-zA-Z]*$")) {
+            if (Validators.name(firstName).isValid()) {
                 break;
             } else {
                 System.out.println(
@@ -400,7 +488,7 @@ public class StudentDataManagementSystem {
         String middleName;
         while (true) {
             middleName = inputString("Middle name: ");
-            if (middleName.matches("^[A-Z][a-zA-Z]*$")) {
+            if (Validators.name(middleName).isValid()) {
                 break;
             } else {
                 System.out.println(
@@ -411,7 +499,7 @@ public class StudentDataManagementSystem {
         String address;
         while (true) {
             address = inputString("Address: ");
-            if (address.matches("^\\d*\\s*[A-Z][a-zA-Z]+\\s[A-Z][a-zA-Z]+\\s[A-Z][a-zA-Z]+$")) {
+            if (Validators.address(address).isValid()) {
                 break;
             } else {
                 System.out.println(
@@ -422,12 +510,8 @@ public class StudentDataManagementSystem {
         String gender;
         while (true) {
             gender = inputString("Gender: ");
-            gender = gender.toLowerCase();
-            if (gender.matches("^(m|male)$")) {
-                gender = "M";
-                break;
-            } else if (gender.matches("^(f|female)$")) {
-                gender = "F";
+            if (Validators.gender(gender).isValid()) {
+                gender = Validators.normalizeGender(gender);
                 break;
             } else {
                 System.out.println(
@@ -438,7 +522,7 @@ public class StudentDataManagementSystem {
         String phoneNumber;
         while (true) {
             phoneNumber = inputString("Phone number: ");
-            if (phoneNumber.matches(PHONE_NUMBER_REGEX)) {
+            if (Validators.phoneNumber(phoneNumber).isValid()) {
                 break;
             } else {
                 System.out.println("Invalid input. Please enter a valid phone number.");
@@ -448,7 +532,7 @@ public class StudentDataManagementSystem {
         String email;
         while (true) {
             email = inputString("Email: ");
-            if (email.matches(EMAIL_REGEX)) {
+            if (Validators.emailAddress(email).isValid()) {
                 break;
             } else {
                 System.out.println("Invalid input. Please enter a valid email address.");
@@ -458,8 +542,8 @@ public class StudentDataManagementSystem {
         String dateOfBirth;
         while (true) {
             dateOfBirth = inputString("Date of Birth (MM/DD/YYYY): ");
-            if (dateOfBirth.matches(DOB_REGEX)) {
-                dateOfBirth = dateOfBirth.replaceAll("\\b(0(?=[1-9]))", "");
+            if (Validators.dateOfBirth(dateOfBirth).isValid()) {
+                dateOfBirth = Validators.stripLeadingZeros(dateOfBirth);
                 break;
             } else {
                 System.out.println("Invalid input. Please enter a valid date of birth in the format MM/DD/YYYY.");
@@ -469,7 +553,7 @@ public class StudentDataManagementSystem {
         String course;
         while (true) {
             course = inputString("Course: ");
-            if (course.matches("^(BSCS|BSIT|BSCoE)$")) {
+            if (Validators.course(course).isValid()) {
                 break;
             } else {
                 System.out.println(
@@ -480,35 +564,25 @@ public class StudentDataManagementSystem {
         String dateOfEnrollment;
         while (true) {
             dateOfEnrollment = inputString("Date of Enrollment (MM/DD/YYYY): ");
-            if (dateOfEnrollment.matches("^(0?[1-9]|1[0-2])/(0?[1-9]|[12][0-9]|3[01])/(19|20)\\d\\d$")) {
+            if (Validators.dateOfEnrollment(dateOfEnrollment).isValid()) {
                 // Remove leading zeros
-                dateOfEnrollment = dateOfEnrollment.replaceAll("\\b(0(?=[1-9]))", "");
+                dateOfEnrollment = Validators.stripLeadingZeros(dateOfEnrollment);
                 break;
             } else {
                 System.out.println("Invalid input. Please enter a valid date from 01/30/2023 to 02/12/2023.");
             }
         }
 
-        int id = generateStudentId();
-        Student student = new Student(Integer.toString(id), lastName, firstName, middleName, address, gender,
-                phoneNumber, email, dateOfBirth, course, dateOfEnrollment);
-        students.add(student);
+        // An import may bring in the generated ID first, in which case a new one is drawn
+        Student student;
+        do {
+            student = new Student(repository.newStudentId(), lastName, firstName, middleName, address,
+                    gender, phoneNumber, email, dateOfBirth, course, dateOfEnrollment);
+        } while (!repository.add(student));
         System.out.printf("Student created with ID %s.%n", student.getId());
 
-        // Write the new student data to a CSV file
-        String csvFile = "Student/src/students.csv";
-        try (FileWriter writer = new FileWriter(csvFile, true)) {
-            String[] dateOfBirthArr = dateOfBirth.split("/");
-            String formattedDateOfBirth = String.format("%d/%d/%d", Integer.parseInt(dateOfBirthArr[0]),
-                    Integer.parseInt(dateOfBirthArr[1]), Integer.parseInt(dateOfBirthArr[2]));
-            List<String> studentData = Arrays.asList(student.getId(), lastName, firstName, middleName, address, gender,
-                    phoneNumber, email, formattedDateOfBirth, course, dateOfEnrollment);
-            String studentDataString = String.join(",", studentData);
-            writer.write(studentDataString + "\n");
-            writer.flush();
-        } catch (IOException e) {
-            System.err.println("Error writing student data to file: " + e.getMessage());
-        }
+        // Record the new student in the journal
+        record("student," + formatStudent(student));
 
         System.out.println("Select an option:");
         System.out.println("\u001B[31m[1] Back\u001B[0m");
@@ -522,28 +596,26 @@ public class StudentDataManagementSystem {
         }
     }
 
-    private static int generateStudentId() {
-        int id;
-        do {
-            id = (int) (Math.random() * 9000000) + 1000000; // 7-digit number
-        } while (findStudentById(Integer.toString(id)) != null);
-        return id;
+    static StudentRepository repository() {
+        return repository;
     }
 
-    private static Student findStudentById(String id) {
-        for (Student student : students) {
-            if (student.getId().equals(id)) {
-                return student;
-            }
-        }
-        return null;
+    static ChangeFeed changes() {
+        return changes;
+    }
+
+    static Student findStudentById(String id) {
+        return repository.findById(id);
     }
 
     private static void searchStudent() {
         System.out.println("\u001B[36m[1] Search by ID\u001B[0m");
         System.out.println("\u001B[36m[2] Search by Last Name\u001B[0m");
         System.out.println("\u001B[36m[3] Search by First Name\u001B[0m");
-        System.out.println("\u001B[31m[4] Back\u001B[0m");
+        System.out.println("\u001B[36m[4] Search by Name Prefix\u001B[0m");
+        System.out.println("\u001B[36m[5] Fuzzy Search\u001B[0m");
+        System.out.println("\u001B[36m[6] Filter Query\u001B[0m");
+        System.out.println("\u001B[31m[7] Back\u001B[0m");
         int choice = inputInt("Enter choice: ");
         switch (choice) {
             case 1:
@@ -556,6 +628,15 @@ public class StudentDataManagementSystem {
                 searchStudentByFirstName();
                 break;
             case 4:
+                searchStudentByNamePrefix();
+                break;
+            case 5:
+                searchStudentFuzzy();
+                break;
+            case 6:
+                searchStudentsByQuery();
+                break;
+            case 7:
                 clearScreen();
                 break;
             default:
@@ -587,14 +668,8 @@ public class StudentDataManagementSystem {
         }
     }
 
-    private static List<Student> findStudentsByLastName(String lastName) {
-        List<Student> matchingStudents = new ArrayList<>();
-        for (Student student : students) {
-            if (student.getLastName().equals(lastName)) {
-                matchingStudents.add(student);
-            }
-        }
-        return matchingStudents;
+    static List<Student> findStudentsByLastName(String lastName) {
+        return repository.findByLastName(lastName);
     }
 
     private static void searchStudentByFirstName() {
@@ -610,77 +685,124 @@ public class StudentDataManagementSystem {
         }
     }
 
-    private static List<Student> findStudentsByFirstName(String firstName) {
-        List<Student> matchingStudents = new ArrayList<>();
-        for (Student student : students) {
-            if (student.getFirstName().equalsIgnoreCase(firstName)) {
-                matchingStudents.add(student);
+    static List<Student> findStudentsByFirstName(String firstName) {
+        return repository.findByFirstName(firstName);
+    }
+
+    private static void searchStudentByNamePrefix() {
+        String prefix = inputString("Enter the start of a last or first name: ");
+        List<Student> matchingStudents = findStudentsByNamePrefix(prefix);
+        if (!prefix.isBlank() && !matchingStudents.isEmpty()) {
+            for (Student student : matchingStudents) {
+                System.out.println(student);
+                showStudentSubjects(student);
             }
+        } else {
+            System.out.println("No students found.");
+        }
+    }
+
+    static List<Student> findStudentsByNamePrefix(String prefix) {
+        return repository.findByNamePrefix(prefix);
+    }
+
+    // Matches names, email, address, course and phone number despite typos or partial input
+    private static void searchStudentFuzzy() {
+        String text = inputString("Enter any part of a name, email, address, course or phone number: ");
+        List<FuzzyIndex.Match> matches = repository.findFuzzy(text, FUZZY_SEARCH_LIMIT);
+        if (matches.isEmpty()) {
+            System.out.println("No students found.");
+            return;
+        }
+        TableRenderer table = new TableRenderer(console, TableRenderer.FUZZY_MATCHES).header();
+        for (FuzzyIndex.Match match : matches) {
+            Student student = match.student;
+            table.cell((int) Math.round(match.score * 100) + "%").cell(student.getId())
+                    .cell(student.getLastName()).cell(student.getFirstName()).cell(student.getEmailAddress())
+                    .cell(student.getAddress()).cell(student.getCourse()).cell(student.getPhoneNumber()).endRow();
+        }
+        table.footer().flush();
+    }
+
+    // Filters on any student, subject or grade field, e.g.
+    // course = BSIT and enrolled > 1/30/2023 and any finalRating < 75
+    private static void searchStudentsByQuery() {
+        System.out.println("Fields: id, lastName, firstName, middleName, address, gender, phone, email, birthDate,");
+        System.out.println("course, enrolled, gwa; for subjects after any or all: subject, courseNumber, instructor,");
+        System.out.println("prelims, midterms, finals, finalRating. Compare with = != < <= > >= or ~ (contains).");
+        String text = inputString("Enter query: ");
+        StudentQuery.Plan plan;
+        try {
+            plan = repository.plan(StudentQuery.parse(text));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid query. " + e.getMessage());
+            return;
+        }
+        System.out.println("Plan: " + plan);
+        List<Student> found = plan.stream().limit(QUERY_DISPLAY_LIMIT + 1).collect(Collectors.toList());
+        if (found.isEmpty()) {
+            System.out.println("No students found.");
+            return;
+        }
+        printStudentTable(found.subList(0, Math.min(found.size(), QUERY_DISPLAY_LIMIT)));
+        if (found.size() > QUERY_DISPLAY_LIMIT) {
+            System.out.printf("Showing the first %d matches.%n", QUERY_DISPLAY_LIMIT);
         }
-        return matchingStudents;
     }
 
     private static void editStudentPersonalDetails(Student student, String id) {
-        String lastName = inputStringWithRegex(String.format("Last name [%s]: ", student.getLastName()),
-                "^[A-Z][a-zA-Z]*$", true,
+        String lastName = inputStringWithValidator(String.format("Last name [%s]: ", student.getLastName()),
+                Validators::name, true,
                 "Invalid input. Last name must contain letters only and should be capitalized. Please try again.");
-        student.setLastName(lastName.isBlank() ? student.getLastName() : lastName);
 
-        String firstName = inputStringWithRegex(String.format("First name [%s]: ", student.getFirstName()),
-                "^[A-Z][a-zA-Z]*$", true,
+        String firstName = inputStringWithValidator(String.format("First name [%s]: ", student.getFirstName()),
+                Validators::name, true,
                 "Invalid input. First name must contain letters only and should be capitalized. Please try again.");
-        student.setFirstName(firstName.isBlank() ? student.getFirstName() : firstName);
 
-        String middleName = inputStringWithRegex(String.format("Middle name [%s]: ", student.getMiddleName()),
-                "^[A-Z][a-zA-Z]*$", true,
+        String middleName = inputStringWithValidator(String.format("Middle name [%s]: ", student.getMiddleName()),
+                Validators::name, true,
                 "Invalid input. Middle name must contain letters only and should be capitalized. Please try again.");
-        student.setMiddleName(middleName.isBlank() ? student.getMiddleName() : middleName);
 
-        String address = inputStringWithRegex(String.format("Address [%s]: ", student.getAddress()),
-                "^\\d*\\s*[A-Z][a-zA-Z]+\\s[A-Z][a-zA-Z]+\\s[A-Z][a-zA-Z]+$", true,
+        String address = inputStringWithValidator(String.format("Address [%s]: ", student.getAddress()),
+                Validators::address, true,
                 "Invalid input. Address must be in the format: [number] [Street name] [City name]. Please try again.");
-        student.setAddress(address.isBlank() ? student.getAddress() : address);
 
-        String gender = inputStringWithRegex(String.format("Gender [%s]: ", student.getGender()),
-                "^(m|M|male|Male|f|F|female|Female)$", true,
+        String gender = inputStringWithValidator(String.format("Gender [%s]: ", student.getGender()),
+                Validators::gender, true,
                 "Invalid input. Gender must be either 'M', 'F', 'male' or 'female'. Please try again.");
-        if (!gender.isBlank()) {
-            if (gender.equalsIgnoreCase("m") || gender.equalsIgnoreCase("male")) {
-                gender = "M";
-            } else {
-                gender = "F";
-            }
-        }
-        student.setGender(gender.isBlank() ? student.getGender() : gender);
 
-        String phoneNumber = inputStringWithRegex(String.format("Phone number [%s]: ", student.getPhoneNumber()),
-                PHONE_NUMBER_REGEX, true, "Invalid input. Please enter a valid phone number.");
-        student.setPhoneNumber(phoneNumber.isBlank() ? student.getPhoneNumber() : phoneNumber);
+        String phoneNumber = inputStringWithValidator(String.format("Phone number [%s]: ", student.getPhoneNumber()),
+                Validators::phoneNumber, true, "Invalid input. Please enter a valid phone number.");
 
-        String email = inputStringWithRegex(String.format("Email [%s]: ", student.getEmailAddress()), EMAIL_REGEX, true,
+        String email = inputStringWithValidator(String.format("Email [%s]: ", student.getEmailAddress()),
+                Validators::emailAddress, true,
                 "Invalid input. Please enter a valid email address.");
-        student.setEmail(email.isBlank() ? student.getEmailAddress() : email);
 
-        String dateOfBirth = inputStringWithRegex(String.format("Date of Birth [%s]: ", student.getDateOfBirth()),
-                DOB_REGEX, true, "Invalid input. Please enter a valid date of birth (MM/DD/YYYY).");
-        student.setDateOfBirth(dateOfBirth.isBlank() ? student.getDateOfBirth() : dateOfBirth);
+        String dateOfBirth = inputStringWithValidator(String.format("Date of Birth [%s]: ", student.getDateOfBirth()),
+                Validators::dateOfBirth, true, "Invalid input. Please enter a valid date of birth (MM/DD/YYYY).");
 
-        String course = inputStringWithRegex(String.format("Course [%s]: ", student.getCourse()), "^(BSCS|BSIT|BSCoE)$",
+        String course = inputStringWithValidator(String.format("Course [%s]: ", student.getCourse()), Validators::course,
                 true, "Invalid input. Please enter a valid course (BSCS, BSIT, BSCoE).");
-        student.setCourse(course.isBlank() ? student.getCourse() : course);
 
-        String dateOfEnrollment = inputStringWithRegex(
-                String.format("Date of Enrollment [%s]: ", student.getDateOfEnrollment()), ENROLLMENT_DATE_REGEX, true,
+        String dateOfEnrollment = inputStringWithValidator(
+                String.format("Date of Enrollment [%s]: ", student.getDateOfEnrollment()),
+                date -> Validators.dateOfEnrollment(date, ENROLLMENT_YEAR), true,
                 "Invalid input. Please enter a valid date of enrollment (MM/DD/YYYY) between 01/30/2023 and 02/12/2023.");
-        if (!dateOfEnrollment.isBlank()) {
-            String[] dateParts = dateOfEnrollment.split("/");
-            int month = Integer.parseInt(dateParts[0]);
-            int day = Integer.parseInt(dateParts[1]);
-            int year = Integer.parseInt(dateParts[2]);
-            dateOfEnrollment = String.format("%d/%d/%d", month, day, year);
-        }
-        student.setDateOfEnrollment(dateOfEnrollment.isBlank() ? student.getDateOfEnrollment() : dateOfEnrollment);
-
+        String enrollmentDate = Validators.stripLeadingZeros(dateOfEnrollment);
+
+        // One repository update, so the name indexes follow the new names
+        student = repository.update(student, edited -> {
+            edited.setLastName(lastName.isBlank() ? edited.getLastName() : lastName);
+            edited.setFirstName(firstName.isBlank() ? edited.getFirstName() : firstName);
+            edited.setMiddleName(middleName.isBlank() ? edited.getMiddleName() : middleName);
+            edited.setAddress(address.isBlank() ? edited.getAddress() : address);
+            edited.setGender(gender.isBlank() ? edited.getGender() : Validators.normalizeGender(gender));
+            edited.setPhoneNumber(phoneNumber.isBlank() ? edited.getPhoneNumber() : phoneNumber);
+            edited.setEmail(email.isBlank() ? edited.getEmailAddress() : email);
+            edited.setDateOfBirth(dateOfBirth.isBlank() ? edited.getDateOfBirth() : dateOfBirth);
+            edited.setCourse(course.isBlank() ? edited.getCourse() : course);
+            edited.setDateOfEnrollment(enrollmentDate.isBlank() ? edited.getDateOfEnrollment() : enrollmentDate);
+        });
         updateStudentFile(student);
         System.out.println("Personal details updated.");
 
@@ -697,12 +819,13 @@ public class StudentDataManagementSystem {
         }
     }
 
-    private static String inputStringWithRegex(String prompt, String regex, boolean optional, String errorMessage) {
+    private static String inputStringWithValidator(String prompt, Function<String, Validators.Result> validator,
+            boolean optional, String errorMessage) {
         while (true) {
             String input = inputString(prompt + (optional ? "(press Enter to skip) " : ""));
             if (input.isBlank()) {
                 return ""; // Return empty string when input is blank
-            } else if (input.isEmpty() || input.matches(regex)) {
+            } else if (validator.apply(input).isValid()) {
                 return input;
             } else {
                 System.out.println(errorMessage);
@@ -710,34 +833,144 @@ public class StudentDataManagementSystem {
         }
     }
 
-    private static void updateStudentFile(Student student) {
+    // Journals waiting edits and checkpoints when the process exits, for the modes that edit
+    private static void saveOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            flushAndCheckpoint();
+        }));
+    }
+
+    // Hands an edit to the flusher, which journals it and publishes it to the change feed
+    private static void record(String record) {
+        flusher.record(record);
+    }
+
+    static void updateStudentFile(Student student) {
+        record("student," + formatStudent(student));
+    }
+
+    // Waits for every edit made so far to be journaled
+    static void flushEdits() {
+        flusher.flush();
+    }
+
+    private static String formatStudent(Student student) {
+        return String.join(",", student.getId(), student.getLastName(), student.getFirstName(),
+                student.getMiddleName(), student.getAddress(), student.getGender(), student.getPhoneNumber(),
+                student.getEmailAddress(), student.getDateOfBirth(), student.getCourse(),
+                student.getDateOfEnrollment());
+    }
+
+    private static String formatGrade(Student student, Subject subject) {
+        Grade grade = subject.getGrade();
+        return String.format("%s,%s,%d,%d,%d,%.2f", student.getId(), subject.getName(), grade.getPrelims(),
+                grade.getMidterms(), grade.getFinals(), grade.getFinalRating());
+    }
+
+    // The entity a record changes: a student, one of a student's subjects or its grade. The
+    // flusher writes only the last of several waiting records for the same one.
+    private static String recordKey(String record) {
+        String[] parts = record.split(",", 4);
+        switch (parts[0]) {
+            case "student":
+            case "delete-student":
+                return "student," + parts[1];
+            case "subject":
+            case "delete-subject":
+                return "subject," + parts[1] + "," + parts[2];
+            case "grade":
+                return "grade," + parts[1] + "," + parts[2];
+            default:
+                return record;
+        }
+    }
+
+    // Journals a batch of edits from the flusher and makes it durable with one commit, then
+    // publishes it to the change feed, so the feed never reports an edit the journal does not
+    // hold. Each journal record starts with the number its change gets in the feed; if the feed
+    // falls behind, replaying the journal at the next start fills it in. If the feed cannot be
+    // opened to number the records, or the journal cannot be written, nothing is kept and the
+    // failure is thrown, so the flusher hands the batch back again later.
+    private static void writeRecords(List<String> records) {
+        long seq;
         try {
-            List<String> lines = Files.readAllLines(Paths.get(STUDENT_FILE));
-            for (int i = 0; i < lines.size(); i++) {
-                String line = lines.get(i);
-                String[] parts = line.split(",");
-                if (parts[0].equals(student.getId())) {
-                    String updatedLine = String.format("%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s", student.getId(),
-                            student.getLastName(), student.getFirstName(), student.getMiddleName(),
-                            student.getAddress(), student.getGender(), student.getPhoneNumber(),
-                            student.getEmailAddress(), student.getDateOfBirth(), student.getCourse(),
-                            student.getDateOfEnrollment());
-                    lines.set(i, updatedLine);
-                    Files.write(Paths.get(STUDENT_FILE), lines);
-                    break;
-                }
+            seq = changes.nextSeq();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening change feed: " + e.getMessage(), e);
+        }
+        for (int i = 0; i < records.size(); i++) {
+            journal.append((seq + i) + "," + records.get(i));
+        }
+        try {
+            journal.commit();
+        } catch (IOException e) {
+            journal.discard();
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+        try {
+            for (String record : records) {
+                changes.append(record);
             }
+            changes.commit();
         } catch (IOException e) {
-            System.out.println("Error updating students file: " + e.getMessage());
+            System.out.println("Error writing change feed: " + e.getMessage());
+        }
+    }
+
+    // Folds the journal into the CSV files once it grows large; runs on the flusher's thread
+    private static void checkpointIfLarge() {
+        if (journal.size() >= CHECKPOINT_RECORDS) {
+            checkpoint();
         }
     }
 
+    // Edits that cannot be journaled are not checkpointed either, so the CSV files, the journal
+    // and the change feed stay in step; false if that happened
+    private static boolean flushAndCheckpoint() {
+        try {
+            flusher.flush();
+        } catch (UncheckedIOException e) {
+            System.out.println("Error writing edits: " + e.getMessage());
+            return false;
+        }
+        checkpoint();
+        return true;
+    }
+
+    // Rewrites the CSV files from memory and empties the journal once all three are safely replaced.
+    // The write lock keeps any edit from landing between the save and the reset.
+    private static void checkpoint() {
+        repository.write(() -> {
+            if (journal.isEmpty()) {
+                return;
+            }
+            if (saveStudents()) {
+                // The journal is all that holds changes the feed has not written yet
+                if (feedMissesReplayed) {
+                    System.out.println("Keeping the journal until the change feed can take its edits.");
+                    return;
+                }
+                try {
+                    changes.commit();
+                } catch (IOException e) {
+                    System.out.println("Error writing change feed: " + e.getMessage());
+                    return;
+                }
+                try {
+                    journal.reset();
+                } catch (IOException e) {
+                    System.out.println("Error clearing journal file: " + e.getMessage());
+                }
+            }
+        });
+    }
+
     private static void addSubject(Student student, String id) {
         String subjectName = inputString("Enter subject name: ");
         String courseNumber;
         String instructorName;
         while (true) {
-            courseNumber = inputStringWithRegex("Enter course number (6 digits): ", "^[0-9]{6}$", true,
+            courseNumber = inputStringWithValidator("Enter course number (6 digits): ", Validators::courseNumber, true,
                     "Invalid input. Course number must be a 6-digit number.");
 
             // Check if the course number already exists for a different subject for the
@@ -756,22 +989,17 @@ public class StudentDataManagementSystem {
                     "A subject with this course number already exists for this student. Please enter a different course number.");
         }
 
-        instructorName = inputStringWithRegex("Enter instructor name (2 or more words, capitalized): ",
-                "^([A-Z][a-zA-Z]*\\s){1,}[A-Z][a-zA-Z]*$", true,
+        instructorName = inputStringWithValidator("Enter instructor name (2 or more words, capitalized): ",
+                Validators::instructorName, true,
                 "Invalid input. Instructor name must contain letters only, should be capitalized, and should have 2 or more words.");
 
         Subject subject = new Subject(subjectName, courseNumber, instructorName);
-        student.addSubject(subject);
+        student = repository.update(student, edited -> edited.addSubject(subject));
         System.out.printf("Subject %s added.%n", subjectName);
 
-        // Open the subjects file in append mode and write the new subject to it
-        try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(SUBJECT_FILE, true));
-            writer.write(String.format("%s,%s,%s,%s%n", student.getId(), subjectName, courseNumber, instructorName));
-            writer.close();
-        } catch (IOException e) {
-            System.out.println("Error writing to subjects file.");
-        }
+        // Record the new subject in the journal
+        record(String.format("subject,%s,%s,%s,%s", student.getId(), subjectName, courseNumber,
+                instructorName));
 
         System.out.println("Select an option:");
         System.out.println("\u001B[31m[1] Back\u001B[0m");
@@ -788,44 +1016,28 @@ public class StudentDataManagementSystem {
 
     private static void enterGrades(Student student, String id) {
         System.out.println("Enter grades for each subject:");
-        try (PrintWriter writer = new PrintWriter(new FileWriter(GRADE_FILE, true))) {
-            for (Subject subject : student.getSubjects()) {
-                System.out.println(subject.getName() + ":");
-                boolean validInput = false;
-                while (!validInput) {
-                    System.out.println("Enter 1 to edit grades or any key to skip:");
-                    String choice = inputString("Choice: ");
-                    if (choice.equals("1")) {
-                        int prelims = inputInt("Prelims: ");
-                        int midterms = inputInt("Midterms: ");
-                        int finals = inputInt("Finals: ");
-                        double finalRating = computeFinalRating(prelims, midterms, finals);
-                        Grade grade = subject.getGrade();
-                        if (grade != null) {
-                            grade.setPrelims(prelims);
-                            grade.setMidterms(midterms);
-                            grade.setFinals(finals);
-                            grade.setFinalRating(finalRating);
-
-                            // Update the grades file
-                            saveGrades();
-                        } else {
-                            grade = new Grade(prelims, midterms, finals, finalRating);
-                            subject.setGrade(grade);
-
-                            // Add new grades to the grades file
-                            writer.println(String.format("%s,%s,%d,%d,%d,%.2f",
-                                    student.getId(), subject.getName(), prelims, midterms, finals, finalRating));
-                            writer.flush();
-                        }
-                        validInput = true;
-                    } else {
-                        validInput = true;
-                    }
+        List<Subject> subjects = student.getSubjects();
+        for (int i = 0; i < subjects.size(); i++) {
+            int index = i;
+            System.out.println(subjects.get(i).getName() + ":");
+            boolean validInput = false;
+            while (!validInput) {
+                System.out.println("Enter 1 to edit grades or any key to skip:");
+                String choice = inputString("Choice: ");
+                if (choice.equals("1")) {
+                    int prelims = inputInt("Prelims: ");
+                    int midterms = inputInt("Midterms: ");
+                    int finals = inputInt("Finals: ");
+                    double finalRating = computeFinalRating(prelims, midterms, finals);
+                    student = repository.update(student, edited -> edited.getSubjects().get(index)
+                            .setGrade(new Grade(prelims, midterms, finals, finalRating)));
+                    // Record the new or updated grade in the journal
+                    record("grade," + formatGrade(student, student.getSubjects().get(index)));
+                    validInput = true;
+                } else {
+                    validInput = true;
                 }
             }
-        } catch (IOException e) {
-            System.out.println("Error writing grades file.");
         }
         System.out.println("Grades entered.");
 
@@ -842,6 +1054,93 @@ public class StudentDataManagementSystem {
         }
     }
 
+    // Imports a CSV or JSONL file of students, subjects and grades without the menu
+    static int importStudents(String file) {
+        List<BulkImporter.Row> rows;
+        try {
+            rows = BulkImporter.read(file);
+        } catch (IOException e) {
+            System.out.println("Error reading import file: " + e.getMessage());
+            return 0;
+        }
+        return importRows(rows);
+    }
+
+    // Applies validated rows in file order, so a subject may follow its student in the same file.
+    // The batch holds the repository's write lock, so no other writer can take an imported ID
+    // halfway through. Every accepted row is recorded once the lock is released, so a flush the
+    // recording triggers never holds up readers, and all of them are journaled before this returns.
+    static int importRows(List<BulkImporter.Row> rows) {
+        int[] counts = new int[2];
+        List<String> records = new ArrayList<>();
+        repository.write(() -> {
+            for (BulkImporter.Row row : rows) {
+                String error = row.isValid() ? applyImportRow(row.parts, records) : row.error;
+                if (error == null) {
+                    counts[0]++;
+                } else {
+                    counts[1]++;
+                    System.out.printf("Line %d: %s%n", row.line, error);
+                }
+            }
+        });
+        for (String record : records) {
+            record(record);
+        }
+        int imported = counts[0];
+        int rejected = counts[1];
+        flusher.flush();
+        System.out.printf("Imported %d records, rejected %d.%n", imported, rejected);
+        return imported;
+    }
+
+    // Applies one row and adds the edit it makes to records
+    private static String applyImportRow(String[] parts, List<String> records) {
+        Student student = findStudentById(parts[1]);
+        switch (parts[0]) {
+            case "student":
+                if (student != null) {
+                    return "Duplicate student ID " + parts[1] + ".";
+                }
+                String id = parts[1].isEmpty() ? repository.newStudentId() : parts[1];
+                student = new Student(id, parts[2], parts[3], parts[4], parts[5], parts[6], parts[7], parts[8],
+                        parts[9], parts[10], parts[11]);
+                repository.add(student);
+                records.add("student," + formatStudent(student));
+                return null;
+            case "subject":
+                if (student == null) {
+                    return "No student with ID " + parts[1] + ".";
+                }
+                if (student.getSubject(parts[2]) != null) {
+                    return "Student " + parts[1] + " already has subject " + parts[2] + ".";
+                }
+                if (student.getSubjectByCourseNumber(parts[3]) != null) {
+                    return "Student " + parts[1] + " already has a subject with course number " + parts[3] + ".";
+                }
+                repository.update(student,
+                        edited -> edited.addSubject(new Subject(parts[2], parts[3], parts[4])));
+                records.add(String.join(",", parts));
+                return null;
+            case "grade":
+                if (student == null) {
+                    return "No student with ID " + parts[1] + ".";
+                }
+                if (student.getSubject(parts[2]) == null) {
+                    return "Student " + parts[1] + " has no subject " + parts[2] + ".";
+                }
+                int prelims = Integer.parseInt(parts[3]);
+                int midterms = Integer.parseInt(parts[4]);
+                int finals = Integer.parseInt(parts[5]);
+                student = repository.update(student, edited -> edited.getSubject(parts[2]).setGrade(
+                        new Grade(prelims, midterms, finals, computeFinalRating(prelims, midterms, finals))));
+                records.add("grade," + formatGrade(student, student.getSubject(parts[2])));
+                return null;
+            default:
+                return "Unknown record type: " + parts[0];
+        }
+    }
+
     private static double computeFinalRating(int prelims, int midterms, int finals) {
         return 0.30 * prelims + 0.30 * midterms + 0.40 * finals;
     }
@@ -850,20 +1149,9 @@ public class StudentDataManagementSystem {
         System.out.print("Are you sure you want to delete student " + student.getId() + "? (y/n): ");
         String confirmation = scanner.nextLine();
         if (confirmation.equalsIgnoreCase("y")) {
-            students.remove(student);
+            repository.remove(student);
             System.out.println("Student deleted.");
-            try {
-                List<String> lines = Files.readAllLines(Paths.get(STUDENT_FILE));
-                for (int i = 0; i < lines.size(); i++) {
-                    if (lines.get(i).startsWith(student.getId() + ",")) {
-                        lines.remove(i);
-                        break;
-                    }
-                }
-                Files.write(Paths.get(STUDENT_FILE), lines);
-            } catch (IOException e) {
-                System.out.println("Error deleting student from file.");
-            }
+            record("delete-student," + student.getId());
             try {
                 // Sleep for 1 second
                 Thread.sleep(1000);
@@ -877,88 +1165,272 @@ public class StudentDataManagementSystem {
         }
     }
 
-    private static void loadStudents() {
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(STUDENT_FILE));
-            String line;
-            boolean firstLine = true;
-            while ((line = reader.readLine()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue;
+    // Edits still waiting in the flusher are journaled first, so the reload replays them
+    static void loadStudents() {
+        flusher.flush();
+        repository.write(StudentDataManagementSystem::reloadStudents);
+    }
+
+    // Runs under the write lock, so other writers wait for the reload to finish
+    private static void reloadStudents() {
+        closeLazySubjects(false);
+        repository.clear();
+        GradeColumns.INSTANCE.clear();
+        loadRetiredIds();
+        unmatchedGrades.clear();
+        feedMissesReplayed = false;
+        List<Student> snapshot = lazyLoading() ? null : readSnapshot();
+        if (snapshot != null) {
+            for (Student student : snapshot) {
+                repository.addLoaded(student);
+            }
+        } else {
+            try (ParallelLoader loader = new ParallelLoader(loadThreads())) {
+                List<Student> students = new ArrayList<>();
+                try {
+                    students = loader.readStudents(STUDENT_FILE);
+                } catch (IOException e) {
+                    System.out.println("Error loading students file: " + e.getMessage());
+                }
+                // Subjects and grades, or the markers for loading them later, are attached before
+                // the students are stored, so no reader sees a student half loaded. A duplicated
+                // ID gets them on its first row, the one the repository's ID index keeps.
+                Map<String, Student> studentsById = new HashMap<>();
+                for (Student student : students) {
+                    studentsById.putIfAbsent(student.getId(), student);
                 }
-                String[] parts = line.split(",");
-                if (parts.length < 8) {
-                    System.out.println("Invalid line in students file: " + line);
-                    continue;
+                if (lazyLoading()) {
+                    openLazySubjects(loader, studentsById);
+                } else {
+                    loadSubjects(loader, studentsById);
+                    loadGrades(loader, studentsById);
+                }
+                for (Student student : students) {
+                    repository.addLoaded(student);
                 }
-                String id = parts[0];
-                String lastName = parts[1];
-                String firstName = parts[2];
-                String middleName = parts[3];
-                String address = parts[4];
-                String gender = parts[5];
-                String phoneNumber = parts[6];
-                String emailAddress = parts[7];
-                String dateOfBirth = parts[8];
-                String course = parts[9];
-                String dateOfEnrollment = parts[10];
-                Student student = new Student(id, lastName, firstName, middleName, address, gender, phoneNumber,
-                        emailAddress, dateOfBirth, course, dateOfEnrollment);
-                students.add(student);
             }
-            reader.close();
+        }
+        try {
+            journal.replay(StudentDataManagementSystem::replayJournalRecord, !readOnly);
+        } catch (IOException e) {
+            System.out.println("Error replaying journal file: " + e.getMessage());
+        }
+        if (readOnly) {
+            return;
+        }
+        try {
+            changes.commit();
         } catch (IOException e) {
-            System.out.println("Error loading students file: " + e.getMessage());
+            System.out.println("Error writing change feed: " + e.getMessage());
         }
-        loadSubjects();
-        loadGrades();
     }
 
-    private static void saveStudents() {
+    // Re-applies a journal record and publishes it to the change feed again if a crash kept it
+    // from getting there. Records journaled before the feed numbered them carry no number.
+    private static void replayJournalRecord(String[] parts) {
+        if (parts[0].isEmpty() || !Character.isDigit(parts[0].charAt(0))) {
+            applyJournalRecord(parts);
+            return;
+        }
+        String[] record = Arrays.copyOfRange(parts, 1, parts.length);
+        if (readOnly) {
+            applyJournalRecord(record);
+            return;
+        }
         try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(STUDENT_FILE));
-            writer.write("id,last_name,first_name,middle_name,address,gender,phone_number,email_address");
-            writer.newLine();
-            for (Student student : students) {
-                String line = String.format("%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s", student.getId(), student.getLastName(),
-                        student.getFirstName(), student.getMiddleName(), student.getAddress(), student.getGender(),
-                        student.getPhoneNumber(), student.getEmailAddress(), student.getDateOfBirth(),
-                        student.getCourse(), student.getDateOfEnrollment());
-                writer.write(line);
-                writer.newLine();
+            if (Long.parseLong(parts[0]) >= changes.nextSeq()) {
+                changes.append(String.join(",", record));
             }
-            writer.close();
         } catch (IOException e) {
-            System.out.println("Error saving students file.");
+            System.out.println("Error writing change feed: " + e.getMessage());
+            feedMissesReplayed = true;
+        }
+        applyJournalRecord(record);
+    }
+
+    private static boolean lazyLoading() {
+        return Boolean.getBoolean("sdms.lazy");
+    }
+
+    private static void openLazySubjects(ParallelLoader loader, Map<String, Student> studentsById) {
+        try {
+            lazySubjects = LazySubjectLoader.open(SUBJECT_FILE, GRADE_FILE, studentsById, loader,
+                    unmatchedGrades::add);
+        } catch (IOException e) {
+            System.out.println("Error indexing subjects and grades files: " + e.getMessage());
+        }
+    }
+
+    // Lets go of the subjects and grades files, first parsing whatever is still waiting in them
+    // if the students stay. Must run before the files are replaced.
+    private static void closeLazySubjects(boolean keepStudents) {
+        if (lazySubjects == null) {
+            return;
+        }
+        if (keepStudents) {
+            for (Student student : repository.students()) {
+                student.getSubjects();
+            }
+        }
+        try {
+            lazySubjects.close();
+        } catch (IOException e) {
+            System.out.println("Error closing subjects and grades files: " + e.getMessage());
         }
-        saveSubjects();
-        saveGrades();
+        lazySubjects = null;
     }
 
-    private static void loadSubjects() {
+    private static boolean snapshotsEnabled() {
+        return Boolean.parseBoolean(System.getProperty("sdms.snapshot", "true"));
+    }
+
+    // Returns the students from the binary snapshot if it was taken from the current CSV files
+    private static List<Student> readSnapshot() {
+        if (!snapshotsEnabled()) {
+            return null;
+        }
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(SUBJECT_FILE));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length < 4) {
-                    System.out.printf("Invalid line in subjects file: %s%n", line);
-                    continue;
+            return Snapshot.read(SNAPSHOT_FILE, Snapshot.stamp(STUDENT_FILE, SUBJECT_FILE, GRADE_FILE),
+                    unmatchedGrades);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int loadThreads() {
+        return Integer.getInteger("sdms.loadThreads", Runtime.getRuntime().availableProcessors());
+    }
+
+    // Re-applies an edit recorded in the journal. Every record is idempotent, so a record whose
+    // effect already reached the CSV files before a crash can safely be applied again.
+    private static void applyJournalRecord(String[] parts) {
+        Student student = findStudentById(parts[1]);
+        switch (parts[0]) {
+            case "student":
+                if (student == null) {
+                    repository.add(new Student(parts[1], parts[2], parts[3], parts[4], parts[5], parts[6], parts[7],
+                            parts[8], parts[9], parts[10], parts[11]));
+                    break;
                 }
-                String studentId = parts[0];
-                String subjectName = parts[1];
-                String courseNumber = parts[2];
-                String instructorName = parts[3];
-                Student student = findStudentById(studentId);
+                repository.update(student, edited -> {
+                    edited.setLastName(parts[2]);
+                    edited.setFirstName(parts[3]);
+                    edited.setMiddleName(parts[4]);
+                    edited.setAddress(parts[5]);
+                    edited.setGender(parts[6]);
+                    edited.setPhoneNumber(parts[7]);
+                    edited.setEmail(parts[8]);
+                    edited.setDateOfBirth(parts[9]);
+                    edited.setCourse(parts[10]);
+                    edited.setDateOfEnrollment(parts[11]);
+                });
+                break;
+            case "delete-student":
                 if (student != null) {
-                    Subject subject = new Subject(subjectName);
-                    subject.setCourseNumber(courseNumber);
-                    subject.setInstructorName(instructorName);
-                    student.addSubject(subject);
+                    repository.remove(student);
                 }
-            }
-            reader.close();
+                break;
+            case "subject":
+                if (student != null) {
+                    repository.update(student, edited -> {
+                        Subject subject = edited.getSubject(parts[2]);
+                        if (subject == null) {
+                            edited.addSubject(new Subject(parts[2], parts[3], parts[4]));
+                        } else {
+                            edited.updateSubject(subject, parts[3], parts[4]);
+                        }
+                    });
+                }
+                break;
+            case "delete-subject":
+                if (student != null && student.getSubject(parts[2]) != null) {
+                    repository.update(student, edited -> edited.removeSubject(edited.getSubject(parts[2])));
+                }
+                break;
+            case "grade":
+                if (student != null && student.getSubject(parts[2]) != null) {
+                    repository.update(student, edited -> edited.getSubject(parts[2]).setGrade(
+                            new Grade(Integer.parseInt(parts[3]), Integer.parseInt(parts[4]),
+                                    Integer.parseInt(parts[5]), Double.parseDouble(parts[6]))));
+                }
+                break;
+            default:
+                System.out.println("Unknown journal entry: " + String.join(",", parts));
+        }
+    }
+
+    // Writes all three CSV files and the snapshot from one consistent state; writers wait meanwhile
+    static boolean saveStudents() {
+        return repository.write(() -> writeDataFiles());
+    }
+
+    private static boolean writeDataFiles() {
+        closeLazySubjects(true);
+        if (!saveRetiredIds()) {
+            return false;
+        }
+        try {
+            AtomicFile.write(STUDENT_FILE, writer -> {
+                writer.write("id,last_name,first_name,middle_name,address,gender,phone_number,email_address");
+                writer.newLine();
+                for (Student student : repository.students()) {
+                    writer.write(formatStudent(student));
+                    writer.newLine();
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Error saving students file.");
+            return false;
+        }
+        if (!saveSubjects() || !saveGrades()) {
+            return false;
+        }
+        saveSnapshot();
+        return true;
+    }
+
+    private static boolean saveRetiredIds() {
+        try {
+            AtomicFile.write(RETIRED_FILE, writer -> {
+                for (String id : repository.retiredIds()) {
+                    writer.write(id);
+                    writer.newLine();
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Error saving retired IDs file.");
+            return false;
+        }
+        return true;
+    }
+
+    private static void loadRetiredIds() {
+        if (!new File(RETIRED_FILE).exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(RETIRED_FILE))) {
+            repository.retireIds(reader.lines().map(String::trim).collect(Collectors.toList()));
+        } catch (IOException e) {
+            System.out.println("Error loading retired IDs file.");
+        }
+    }
+
+    // The snapshot only speeds up startup, so failing to write it never fails a save
+    private static void saveSnapshot() {
+        if (!snapshotsEnabled()) {
+            return;
+        }
+        try {
+            Snapshot.write(SNAPSHOT_FILE, repository.students(), unmatchedGrades,
+                    Snapshot.stamp(STUDENT_FILE, SUBJECT_FILE, GRADE_FILE));
+        } catch (IOException e) {
+            System.out.println("Error saving snapshot file: " + e.getMessage());
+        }
+    }
+
+    private static void loadSubjects(ParallelLoader loader, Map<String, Student> studentsById) {
+        try {
+            loader.readSubjects(SUBJECT_FILE, studentsById);
         } catch (IOException e) {
             System.out.println("Error loading subjects file.");
             e.printStackTrace();
@@ -977,54 +1449,21 @@ public class StudentDataManagementSystem {
             System.out.printf("Student with ID %s has no subjects.%n", studentId);
         }
 
-        int subjectWidth = 30;
-        int courseNumberWidth = 12;
-        int instructorWidth = 20;
-        int prelimWidth = 8;
-        int midtermWidth = 8;
-        int finalWidth = 8;
-        int ratingWidth = 12;
-
-        // Print table headers
-        System.out.format("+%s+%s+%s+%s+%s+%s+%s+\n",
-                "-".repeat(subjectWidth + 2), "-".repeat(courseNumberWidth + 2), "-".repeat(instructorWidth + 2),
-                "-".repeat(prelimWidth + 2), "-".repeat(midtermWidth + 2), "-".repeat(finalWidth + 2),
-                "-".repeat(ratingWidth + 2));
-        System.out.format("| %-" + subjectWidth + "s | %-" + courseNumberWidth + "s | %-" + instructorWidth + "s | %-"
-                + prelimWidth + "s | %-" + midtermWidth + "s | %-" + finalWidth + "s | %-" + ratingWidth + "s |\n",
-                "Subject", "Course No.", "Instructor", "Prelim", "Midterm", "Final", "Final Rating");
-        System.out.format("+%s+%s+%s+%s+%s+%s+%s+\n",
-                "-".repeat(subjectWidth + 2), "-".repeat(courseNumberWidth + 2), "-".repeat(instructorWidth + 2),
-                "-".repeat(prelimWidth + 2), "-".repeat(midtermWidth + 2), "-".repeat(finalWidth + 2),
-                "-".repeat(ratingWidth + 2));
-
-        // Print subject info
+        TableRenderer table = new TableRenderer(console, TableRenderer.SUBJECTS).header();
         for (Subject subject : subjects) {
+            table.cell(subject.getName()).cell(subject.getCourseNumber()).cell(subject.getInstructorName());
             Grade grade = subject.getGrade();
             if (grade != null) {
                 int prelims = grade.getPrelims();
                 int midterms = grade.getMidterms();
                 int finals = grade.getFinals();
-                double finalRating = computeFinalRating(prelims, midterms, finals);
-                System.out.format(
-                        "| %-" + subjectWidth + "s | %-" + courseNumberWidth + "s | %-" + instructorWidth + "s | %-"
-                                + prelimWidth + "d | %-" + midtermWidth + "d | %-" + finalWidth + "d | %-" + ratingWidth
-                                + ".2f |\n",
-                        subject.getName(), subject.getCourseNumber(), subject.getInstructorName(), prelims, midterms,
-                        finals, finalRating);
+                table.cell(prelims).cell(midterms).cell(finals).cell(computeFinalRating(prelims, midterms, finals));
             } else {
-                System.out.format(
-                        "| %-" + subjectWidth + "s | %-" + courseNumberWidth + "s | %-" + instructorWidth + "s | %-"
-                                + prelimWidth + "s | %-" + midtermWidth + "s | %-" + finalWidth + "s | %-" + ratingWidth
-                                + "s |\n",
-                        subject.getName(), subject.getCourseNumber(), subject.getInstructorName(), "-", "-", "-", "-");
+                table.cell("-").cell("-").cell("-").cell("-");
             }
+            table.endRow();
         }
-
-        System.out.format("+%s+%s+%s+%s+%s+%s+%s+\n",
-                "-".repeat(subjectWidth + 2), "-".repeat(courseNumberWidth + 2), "-".repeat(instructorWidth + 2),
-                "-".repeat(prelimWidth + 2), "-".repeat(midtermWidth + 2), "-".repeat(finalWidth + 2),
-                "-".repeat(ratingWidth + 2));
+        table.footer().flush();
 
         addSubjectChoices(student, studentId);
     }
@@ -1075,30 +1514,11 @@ public class StudentDataManagementSystem {
         }
 
         Subject subject = subjects.get(choice - 1);
-        subjects.remove(subject);
+        student = repository.update(student,
+                edited -> edited.removeSubject(edited.getSubjects().get(choice - 1)));
 
-        // Delete grades from grades.csv file
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(GRADE_FILE));
-            String line;
-            StringBuilder output = new StringBuilder();
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                String studentId = parts[0];
-                String subjectName = parts[1];
-                if (!studentId.equals(student.getId()) || !subjectName.equals(subject.getName())) {
-                    output.append(line).append("\n");
-                }
-            }
-            reader.close();
-
-            BufferedWriter writer = new BufferedWriter(new FileWriter(GRADE_FILE));
-            writer.write(output.toString());
-            writer.close();
-        } catch (IOException e) {
-            System.out.println("Error deleting grades file.");
-        }
-        saveStudents();
+        // Record the deletion in the journal; the next checkpoint drops the subject's grade rows
+        record(String.format("delete-subject,%s,%s", student.getId(), subject.getName()));
         System.out.printf("%s has been deleted.\n", subject.getName());
         System.out.println("Select an option:");
         System.out.println("\u001B[31m[1] Back\u001B[0m");
@@ -1113,103 +1533,64 @@ public class StudentDataManagementSystem {
         }
     }
 
-    private static void loadGrades() {
+    private static void loadGrades(ParallelLoader loader, Map<String, Student> studentsById) {
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(GRADE_FILE));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.trim().split(",");
-                if (parts.length < 6) {
-                    System.out.println("Invalid line format in grades.csv: " + line);
-                    continue;
-                }
-                String studentId = parts[0];
-                String subjectName = parts[1];
-                int prelims = Integer.parseInt(parts[2]);
-                int midterms = Integer.parseInt(parts[3]);
-                int finals = Integer.parseInt(parts[4]);
-                double finalRating = Double.parseDouble(parts[5]);
-                Student student = findStudentById(studentId);
-                if (student != null) {
-                    Subject subject = student.getSubject(subjectName);
-                    if (subject != null) {
-                        Grade grade = new Grade(prelims, midterms, finals, finalRating);
-                        subject.setGrade(grade);
-                    }
-                }
-            }
-            reader.close();
+            loader.readGrades(GRADE_FILE, studentsById, unmatchedGrades::add);
         } catch (IOException e) {
             System.out.println("Error loading grades file.");
         }
     }
 
-    private static void saveSubjects() {
+    private static boolean saveSubjects() {
         try {
-            BufferedWriter writer = new BufferedWriter(new FileWriter(SUBJECT_FILE));
-            for (Student student : students) {
-                for (Subject subject : student.getSubjects()) {
-                    String line = String.format("%s,%s,%s,%s", student.getId(), subject.getName(),
-                            subject.getCourseNumber(), subject.getInstructorName());
-                    writer.write(line);
-                    writer.newLine();
+            AtomicFile.write(SUBJECT_FILE, writer -> {
+                for (Student student : repository.students()) {
+                    for (Subject subject : student.getSubjects()) {
+                        String line = String.format("%s,%s,%s,%s", student.getId(), subject.getName(),
+                                subject.getCourseNumber(), subject.getInstructorName());
+                        writer.write(line);
+                        writer.newLine();
+                    }
                 }
-            }
-            writer.close();
+            });
         } catch (IOException e) {
             System.out.println("Error saving subjects file.");
+            return false;
         }
+        return true;
     }
 
-    private static void saveGrades() {
+    static boolean saveGrades() {
         try {
-            List<String> newLines = new ArrayList<>();
-            List<String> existingLines = Files.readAllLines(Paths.get(GRADE_FILE));
-            // Iterate over all students and their subjects
-            for (Student student : students) {
-                for (Subject subject : student.getSubjects()) {
-                    // Check if this subject already has a grade in the file
-                    boolean found = false;
-                    for (int i = 0; i < existingLines.size(); i++) {
-                        String line = existingLines.get(i);
-                        String[] parts = line.split(",");
-                        if (parts[0].equals(student.getId()) && parts[1].equals(subject.getName())) {
-                            // Found an existing grade for this subject, update it
-                            line = String.format("%s,%s,%d,%d,%d,%.2f", student.getId(), subject.getName(),
-                                    subject.getGrade().getPrelims(), subject.getGrade().getMidterms(),
-                                    subject.getGrade().getFinals(), subject.getGrade().getFinalRating());
-                            existingLines.set(i, line);
-                            found = true;
-                            break;
+            AtomicFile.write(GRADE_FILE, writer -> {
+                for (Student student : repository.students()) {
+                    for (Subject subject : student.getSubjects()) {
+                        if (subject.getGrade() != null) {
+                            writer.write(formatGrade(student, subject));
+                            writer.newLine();
                         }
                     }
-                    // If no existing grade was found, add a new line to the list of new lines
-                    if (!found && subject.getGrade() != null) {
-                        String line = String.format("%s,%s,%d,%d,%d,%.2f", student.getId(), subject.getName(),
-                                subject.getGrade().getPrelims(), subject.getGrade().getMidterms(),
-                                subject.getGrade().getFinals(), subject.getGrade().getFinalRating());
-                        newLines.add(line);
+                }
+                // Lines no student or subject took go back as they were, unless a grade entered
+                // since for the same subject replaces them
+                for (String line : unmatchedGrades) {
+                    if (!hasGrade(line)) {
+                        writer.write(line);
+                        writer.newLine();
                     }
                 }
-            }
-
-            // Write all the new lines to the end of the existing file
-            BufferedWriter writer = new BufferedWriter(new FileWriter(GRADE_FILE, true));
-            for (String line : newLines) {
-                writer.write(line);
-                writer.newLine();
-            }
-            writer.close();
-
-            // Overwrite the existing file with the updated lines
-            writer = new BufferedWriter(new FileWriter(GRADE_FILE));
-            for (String line : existingLines) {
-                writer.write(line);
-                writer.newLine();
-            }
-            writer.close();
+            });
         } catch (IOException e) {
             System.out.println("Error saving grades file.");
+            return false;
         }
+        return true;
+    }
+
+    private static boolean hasGrade(String gradeLine) {
+        String[] parts = gradeLine.split(",", 3);
+        Student student = parts.length < 3 ? null : findStudentById(parts[0].trim());
+        Subject subject = student == null ? null : student.getSubject(parts[1]);
+        return subject != null && subject.getGrade() != null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,94 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+// Sort orders for keyset pagination. Each student has a Key in every order, and
+// StudentRepository keeps one sorted index per order. A page cursor is the key of a student on
+// the edge of a page, so the next page starts right after it, even when students before it
+// have been added or removed in the meantime.
+enum StudentOrder {
+    ID,
+    LAST_NAME,
+    ENROLLMENT_DATE;
+
+    Key keyOf(Student student) {
+        switch (this) {
+            case LAST_NAME:
+                return new Key(0, student.getLastName().toLowerCase(Locale.ROOT), student.getId(), student.sequence);
+            case ENROLLMENT_DATE:
+                return new Key(dateKey(student.getDateOfEnrollment()), "", student.getId(), student.sequence);
+            default:
+                return new Key(0, "", student.getId(), student.sequence);
+        }
+    }
+
+    // Turns an M/D/YYYY date into YYYYMMDD so dates sort chronologically; 0 if it is not a date
+    static int dateKey(String date) {
+        if (date == null) {
+            return 0;
+        }
+        String[] parts = date.split("/");
+        if (parts.length != 3) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(parts[2]) * 10000 + Integer.parseInt(parts[0]) * 100 + Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Position of a student in an order: the sort value, then the ID and the insertion
+    // sequence so every student has a distinct key
+    static final class Key implements Comparable<Key> {
+        final int number;
+        final String text;
+        final String id;
+        final long sequence;
+
+        Key(int number, String text, String id, long sequence) {
+            this.number = number;
+            this.text = text;
+            this.id = id;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int result = Integer.compare(number, other.number);
+            if (result == 0) {
+                result = text.compareTo(other.text);
+            }
+            if (result == 0) {
+                result = id.compareTo(other.id);
+            }
+            if (result == 0) {
+                result = Long.compare(sequence, other.sequence);
+            }
+            return result;
+        }
+
+        // An opaque, URL-safe form of the key for handing to clients
+        String toCursor() {
+            String plain = number + "\0" + text + "\0" + id + "\0" + sequence;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Key fromCursor(String cursor) {
+            String[] parts;
+            try {
+                parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\0", -1);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+            try {
+                return new Key(Integer.parseInt(parts[0]), parts[1], parts[2], Long.parseLong(parts[3]));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+        }
+    }
+}
@@ -0,0 +1,484 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// A filter over students, their subjects and their grades: a list of conditions that must all
+// hold. Build one in code,
+//   StudentQuery.builder().where(Field.COURSE, Op.EQ, "BSIT").anySubject(Field.FINAL_RATING, Op.LT, "75").build()
+// or parse the same thing from text,
+//   course = BSIT and enrolled > 1/30/2023 and any finalRating < 75
+// Subject conditions are quantified with any or all, and several in parentheses apply to the
+// same subject: any (instructor = "Victor Lim" and finalRating < 75). Text compares ignoring
+// case, ~ means contains, dates are M/D/YYYY and gwa is the mean final rating. StudentRepository
+// turns a query into a Plan that reads from its most selective index.
+class StudentQuery {
+    enum Kind {
+        TEXT,
+        NUMBER,
+        DATE
+    }
+
+    enum Field {
+        ID("id", Kind.TEXT, false),
+        LAST_NAME("lastName", Kind.TEXT, false),
+        FIRST_NAME("firstName", Kind.TEXT, false),
+        MIDDLE_NAME("middleName", Kind.TEXT, false),
+        ADDRESS("address", Kind.TEXT, false),
+        GENDER("gender", Kind.TEXT, false),
+        PHONE("phone", Kind.TEXT, false),
+        EMAIL("email", Kind.TEXT, false),
+        BIRTH_DATE("birthDate", Kind.DATE, false),
+        COURSE("course", Kind.TEXT, false),
+        ENROLLED("enrolled", Kind.DATE, false),
+        GWA("gwa", Kind.NUMBER, false),
+        SUBJECT("subject", Kind.TEXT, true),
+        COURSE_NUMBER("courseNumber", Kind.TEXT, true),
+        INSTRUCTOR("instructor", Kind.TEXT, true),
+        PRELIMS("prelims", Kind.NUMBER, true),
+        MIDTERMS("midterms", Kind.NUMBER, true),
+        FINALS("finals", Kind.NUMBER, true),
+        FINAL_RATING("finalRating", Kind.NUMBER, true);
+
+        final String name;
+        final Kind kind;
+        final boolean ofSubject;
+
+        Field(String name, Kind kind, boolean ofSubject) {
+            this.name = name;
+            this.kind = kind;
+            this.ofSubject = ofSubject;
+        }
+
+        static Field named(String name) {
+            for (Field field : values()) {
+                if (field.name.equalsIgnoreCase(name)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("Unknown field " + name + ".");
+        }
+
+        // The field's value as text, number or date key, or null where the student has none
+        Object valueOf(Student student) {
+            switch (this) {
+                case ID:
+                    return student.getId();
+                case LAST_NAME:
+                    return student.getLastName();
+                case FIRST_NAME:
+                    return student.getFirstName();
+                case MIDDLE_NAME:
+                    return student.getMiddleName();
+                case ADDRESS:
+                    return student.getAddress();
+                case GENDER:
+                    return student.getGender();
+                case PHONE:
+                    return student.getPhoneNumber();
+                case EMAIL:
+                    return student.getEmailAddress();
+                case BIRTH_DATE:
+                    return dateOrNull(student.getDateOfBirth());
+                case COURSE:
+                    return student.getCourse();
+                case ENROLLED:
+                    return dateOrNull(student.getDateOfEnrollment());
+                default:
+                    int gwa = Rankings.gwa(student);
+                    return gwa < 0 ? null : gwa / 100.0;
+            }
+        }
+
+        Object valueOf(Subject subject) {
+            Grade grade = subject.getGrade();
+            switch (this) {
+                case SUBJECT:
+                    return subject.getName();
+                case COURSE_NUMBER:
+                    return subject.getCourseNumber();
+                case INSTRUCTOR:
+                    return subject.getInstructorName();
+                case PRELIMS:
+                    return grade == null ? null : (double) grade.getPrelims();
+                case MIDTERMS:
+                    return grade == null ? null : (double) grade.getMidterms();
+                case FINALS:
+                    return grade == null ? null : (double) grade.getFinals();
+                default:
+                    return grade == null ? null : grade.getFinalRating();
+            }
+        }
+
+        private static Object dateOrNull(String date) {
+            int key = StudentOrder.dateKey(date);
+            return key == 0 ? null : key;
+        }
+    }
+
+    enum Op {
+        EQ("="),
+        NE("!="),
+        LT("<"),
+        LE("<="),
+        GT(">"),
+        GE(">="),
+        CONTAINS("~");
+
+        final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+
+        static Op of(String symbol) {
+            for (Op op : values()) {
+                if (op.symbol.equals(symbol)) {
+                    return op;
+                }
+            }
+            return null;
+        }
+    }
+
+    // One comparison of a field against a value, parsed for the field's kind up front
+    static final class Comparison {
+        final Field field;
+        final Op op;
+        final String text;
+        private final Object value;
+
+        Comparison(Field field, Op op, String text) {
+            this.field = field;
+            this.op = op;
+            this.text = text;
+            if (op == Op.CONTAINS && field.kind != Kind.TEXT) {
+                throw new IllegalArgumentException(field.name + " cannot be searched with ~.");
+            }
+            switch (field.kind) {
+                case NUMBER:
+                    try {
+                        value = Double.parseDouble(text);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException(field.name + " needs a number, not " + text + ".");
+                    }
+                    break;
+                case DATE:
+                    int key = StudentOrder.dateKey(text);
+                    if (key == 0) {
+                        throw new IllegalArgumentException(field.name + " needs a date as M/D/YYYY, not " + text + ".");
+                    }
+                    value = key;
+                    break;
+                default:
+                    value = text;
+            }
+        }
+
+        // The value as a YYYYMMDD key, for date comparisons
+        int dateKey() {
+            return (Integer) value;
+        }
+
+        boolean test(Object actual) {
+            if (actual == null) {
+                return false;
+            }
+            int result;
+            if (field.kind == Kind.TEXT) {
+                String actualText = (String) actual;
+                if (op == Op.CONTAINS) {
+                    return containsIgnoreCase(actualText, text);
+                }
+                result = actualText.compareToIgnoreCase(text);
+            } else if (field.kind == Kind.NUMBER) {
+                result = Double.compare((Double) actual, (Double) value);
+            } else {
+                result = Integer.compare((Integer) actual, (Integer) value);
+            }
+            switch (op) {
+                case EQ:
+                    return result == 0;
+                case NE:
+                    return result != 0;
+                case LT:
+                    return result < 0;
+                case LE:
+                    return result <= 0;
+                case GT:
+                    return result > 0;
+                default:
+                    return result >= 0;
+            }
+        }
+
+        private static boolean containsIgnoreCase(String text, String part) {
+            for (int i = 0; i + part.length() <= text.length(); i++) {
+                if (text.regionMatches(true, i, part, 0, part.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return field.name + " " + op.symbol + " " + (text.matches("[^\\s()\"=!<>~]+") ? text : '"' + text + '"');
+        }
+    }
+
+    // Comparisons on the student, or on its subjects: any subject, or every subject, meeting all
+    // of them
+    static final class Condition {
+        final List<Comparison> comparisons;
+        final boolean anySubject;
+        final boolean allSubjects;
+
+        private Condition(List<Comparison> comparisons, boolean anySubject, boolean allSubjects) {
+            this.comparisons = comparisons;
+            this.anySubject = anySubject;
+            this.allSubjects = allSubjects;
+        }
+
+        boolean onSubjects() {
+            return anySubject || allSubjects;
+        }
+
+        boolean test(Student student) {
+            if (!onSubjects()) {
+                Comparison comparison = comparisons.get(0);
+                return comparison.test(comparison.field.valueOf(student));
+            }
+            for (Subject subject : student.getSubjects()) {
+                boolean matches = true;
+                for (Comparison comparison : comparisons) {
+                    if (!comparison.test(comparison.field.valueOf(subject))) {
+                        matches = false;
+                        break;
+                    }
+                }
+                if (matches == anySubject) {
+                    return anySubject;
+                }
+            }
+            return allSubjects;
+        }
+
+        @Override
+        public String toString() {
+            if (!onSubjects()) {
+                return comparisons.get(0).toString();
+            }
+            List<String> parts = new ArrayList<>();
+            for (Comparison comparison : comparisons) {
+                parts.add(comparison.toString());
+            }
+            String inner = String.join(" and ", parts);
+            return (anySubject ? "any " : "all ") + (parts.size() > 1 ? "(" + inner + ")" : inner);
+        }
+    }
+
+    // How a query will run: the students it starts from, and the conditions each of them is
+    // then checked against
+    static final class Plan {
+        final String access;
+        final long estimate;
+        final List<Condition> remaining;
+        final boolean parallel;
+        private final Supplier<Stream<Student>> source;
+        private final StudentQuery query;
+
+        Plan(String access, long estimate, List<Condition> remaining, boolean parallel,
+                Supplier<Stream<Student>> source, StudentQuery query) {
+            this.access = access;
+            this.estimate = estimate;
+            this.remaining = remaining;
+            this.parallel = parallel;
+            this.source = source;
+            this.query = query;
+        }
+
+        // Matching students, found as the stream is consumed. Every condition is checked again on
+        // the students an index gives, so the result never depends on which index was picked.
+        Stream<Student> stream() {
+            Stream<Student> students = source.get();
+            return (parallel ? students.parallel() : students).filter(query::test);
+        }
+
+        @Override
+        public String toString() {
+            String plan = access + " (about " + estimate + " students)";
+            if (remaining.isEmpty()) {
+                return plan;
+            }
+            List<String> checks = new ArrayList<>();
+            for (Condition condition : remaining) {
+                checks.add(condition.toString());
+            }
+            return plan + (parallel ? ", checked in parallel for " : ", checked for ") + String.join(" and ", checks);
+        }
+    }
+
+    static final class Builder {
+        private final List<Condition> conditions = new ArrayList<>();
+
+        Builder where(Field field, Op op, String value) {
+            if (field.ofSubject) {
+                throw new IllegalArgumentException(field.name + " belongs to a subject; use any or all.");
+            }
+            conditions.add(new Condition(List.of(new Comparison(field, op, value)), false, false));
+            return this;
+        }
+
+        Builder anySubject(Field field, Op op, String value) {
+            return subjects(List.of(new Comparison(field, op, value)), true);
+        }
+
+        Builder allSubjects(Field field, Op op, String value) {
+            return subjects(List.of(new Comparison(field, op, value)), false);
+        }
+
+        // Several comparisons that one subject must meet together
+        Builder subjects(List<Comparison> comparisons, boolean any) {
+            for (Comparison comparison : comparisons) {
+                if (!comparison.field.ofSubject) {
+                    throw new IllegalArgumentException(comparison.field.name + " is not a subject field.");
+                }
+            }
+            conditions.add(new Condition(List.copyOf(comparisons), any, !any));
+            return this;
+        }
+
+        StudentQuery build() {
+            return new StudentQuery(conditions);
+        }
+    }
+
+    final List<Condition> conditions;
+
+    private StudentQuery(List<Condition> conditions) {
+        this.conditions = Collections.unmodifiableList(new ArrayList<>(conditions));
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    // Parses "condition and condition ..."; throws IllegalArgumentException saying what is wrong
+    static StudentQuery parse(String text) {
+        List<String> tokens = tokenize(text);
+        Builder builder = builder();
+        int[] at = { 0 };
+        if (tokens.isEmpty()) {
+            return builder.build();
+        }
+        while (true) {
+            String token = next(tokens, at, "a condition");
+            if (token.equalsIgnoreCase("any") || token.equalsIgnoreCase("all")) {
+                List<Comparison> comparisons = new ArrayList<>();
+                if (at[0] < tokens.size() && tokens.get(at[0]).equals("(")) {
+                    at[0]++;
+                    comparisons.add(comparison(tokens, at, next(tokens, at, "a subject field")));
+                    String separator;
+                    while ((separator = next(tokens, at, ")")).equalsIgnoreCase("and")) {
+                        comparisons.add(comparison(tokens, at, next(tokens, at, "a subject field")));
+                    }
+                    if (!separator.equals(")")) {
+                        throw new IllegalArgumentException("Expected and or ) before " + separator + ".");
+                    }
+                } else {
+                    comparisons.add(comparison(tokens, at, next(tokens, at, "a subject field")));
+                }
+                builder.subjects(comparisons, token.equalsIgnoreCase("any"));
+            } else {
+                Comparison comparison = comparison(tokens, at, token);
+                builder.where(comparison.field, comparison.op, comparison.text);
+            }
+            if (at[0] == tokens.size()) {
+                return builder.build();
+            }
+            String and = tokens.get(at[0]++);
+            if (!and.equalsIgnoreCase("and")) {
+                throw new IllegalArgumentException("Expected and before " + and + ".");
+            }
+        }
+    }
+
+    boolean test(Student student) {
+        for (Condition condition : conditions) {
+            if (!condition.test(student)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for (Condition condition : conditions) {
+            parts.add(condition.toString());
+        }
+        return String.join(" and ", parts);
+    }
+
+    private static Comparison comparison(List<String> tokens, int[] at, String fieldName) {
+        Field field = Field.named(fieldName);
+        String symbol = next(tokens, at, "a comparison after " + fieldName);
+        Op op = Op.of(symbol);
+        if (op == null) {
+            throw new IllegalArgumentException("Expected a comparison after " + fieldName + ", not " + symbol + ".");
+        }
+        String value = next(tokens, at, "a value after " + fieldName + " " + symbol);
+        if (value.startsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return new Comparison(field, op, value);
+    }
+
+    private static String next(List<String> tokens, int[] at, String expected) {
+        if (at[0] == tokens.size()) {
+            throw new IllegalArgumentException("Expected " + expected + " at the end.");
+        }
+        return tokens.get(at[0]++);
+    }
+
+    // Words, "quoted text" (kept with its quotes), parentheses and the comparison symbols
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unclosed quote.");
+                }
+                tokens.add(text.substring(i, end + 1));
+                i = end + 1;
+            } else if ("=!<>~".indexOf(c) >= 0) {
+                int end = i + 1;
+                if (end < text.length() && text.charAt(end) == '=' && c != '=' && c != '~') {
+                    end++;
+                }
+                tokens.add(text.substring(i, end));
+                i = end;
+            } else {
+                int end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end))
+                        && "()\"=!<>~".indexOf(text.charAt(end)) < 0) {
+                    end++;
+                }
+                tokens.add(text.substring(i, end));
+                i = end;
+            }
+        }
+        return tokens;
+    }
+}
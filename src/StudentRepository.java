@@ -0,0 +1,521 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Thread-safe home of the loaded students: the roster in insertion order, the ID index, the
+// name and course indexes and a count of students per enrollment date, which the query planner
+// picks between, and a bitmap of the 7-digit IDs in use for handing out new ones. The ID of a
+// removed student stays taken, so a new student never inherits a deleted one's history in the
+// change feed or anywhere else keyed by student ID. Reads never take the write lock. The ID
+// index is a ConcurrentHashMap, and the roster, the name indexes and the sorted orders used for
+// paging are concurrent skip lists, so lookups, searches and page scans can run alongside a
+// writer. Writes are serialized by one lock, which makes every read-modify-write done through
+// update or write atomic with respect to other writers; no update is lost under contention. A
+// stored student is never changed in place: update changes a copy and swaps it in, so a reader
+// holding a student always sees one whole version of it.
+// Grade statistics, GWA rankings and the trigram index for fuzzy search are built in one pass
+// when first asked for after a load (statistics and rankings parse every student's grades in
+// lazy mode), and then follow every add, remove and update.
+class StudentRepository {
+    // Query plans starting from at least this many students filter them in parallel
+    private static final int PARALLEL_QUERY_THRESHOLD = 20000;
+
+    // One page of a keyset walk. The cursors continue the walk backwards from the first student
+    // or forwards from the last one, and are null where there is nothing more to see.
+    static class Page {
+        final List<Student> students;
+        final String previousCursor;
+        final String nextCursor;
+
+        Page(List<Student> students, String previousCursor, String nextCursor) {
+            this.students = students;
+            this.previousCursor = previousCursor;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Student> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Student> roster = new ConcurrentSkipListMap<>();
+    private final NameIndex lastNameIndex = new NameIndex();
+    private final NameIndex firstNameIndex = new NameIndex();
+    private final NameIndex courseIndex = new NameIndex();
+    // Students per enrollment date, as YYYYMMDD, for estimating date ranges
+    private final ConcurrentSkipListMap<Integer, Integer> enrollmentDays = new ConcurrentSkipListMap<>();
+    private final Map<StudentOrder, ConcurrentSkipListMap<StudentOrder.Key, Student>> orders = new EnumMap<>(
+            StudentOrder.class);
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final IdAllocator ids = new IdAllocator();
+    // Null until first asked for
+    private volatile GradeStatistics statistics;
+    private volatile Rankings rankings;
+    private volatile FuzzyIndex fuzzyIndex;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public StudentRepository() {
+        for (StudentOrder order : StudentOrder.values()) {
+            orders.put(order, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public Student findById(String id) {
+        return byId.get(id);
+    }
+
+    // An unused 7-digit ID, reserved for the caller. Adding a student with it may still fail if
+    // the same ID arrives explicitly first, as from an import; draw another then.
+    public String newStudentId() {
+        return ids.allocate();
+    }
+
+    // IDs of removed students, which newStudentId never hands out again, in ascending order
+    public List<String> retiredIds() {
+        List<String> retired = new ArrayList<>();
+        ids.forEachTaken(id -> {
+            if (!byId.containsKey(id)) {
+                retired.add(id);
+            }
+        });
+        return retired;
+    }
+
+    // Keeps IDs retired by an earlier run from being handed out
+    public void retireIds(Collection<String> retired) {
+        write(() -> {
+            for (String id : retired) {
+                ids.take(id);
+            }
+        });
+    }
+
+    public int size() {
+        return roster.size();
+    }
+
+    // Every student in insertion order, as a copy the caller may keep
+    public List<Student> students() {
+        return new ArrayList<>(roster.values());
+    }
+
+    // Up to count students in insertion order, skipping the first offset
+    public List<Student> students(int offset, int count) {
+        List<Student> page = new ArrayList<>(Math.min(count, 1024));
+        Iterator<Student> iterator = roster.values().iterator();
+        for (int i = 0; i < offset && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+        while (page.size() < count && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    // The page after the cursor in the given order, or the first page for a null cursor. Costs
+    // O(log n + size) wherever the page is.
+    public Page pageAfter(StudentOrder order, String cursor, int size) {
+        ConcurrentSkipListMap<StudentOrder.Key, Student> index = orders.get(order);
+        NavigableMap<StudentOrder.Key, Student> rest = cursor == null ? index
+                : index.tailMap(StudentOrder.Key.fromCursor(cursor), false);
+        return page(index, rest.entrySet().iterator(), size, false);
+    }
+
+    // The page before the cursor in the given order
+    public Page pageBefore(StudentOrder order, String cursor, int size) {
+        ConcurrentSkipListMap<StudentOrder.Key, Student> index = orders.get(order);
+        NavigableMap<StudentOrder.Key, Student> before = index.headMap(StudentOrder.Key.fromCursor(cursor), false);
+        return page(index, before.descendingMap().entrySet().iterator(), size, true);
+    }
+
+    // The page with the given number, counting from 1. Reaching it walks past the pages before
+    // it, so later pages should be fetched through the cursors.
+    public Page pageAt(StudentOrder order, int number, int size) {
+        ConcurrentSkipListMap<StudentOrder.Key, Student> index = orders.get(order);
+        Iterator<Map.Entry<StudentOrder.Key, Student>> entries = index.entrySet().iterator();
+        for (long skip = (long) (number - 1) * size; skip > 0 && entries.hasNext(); skip--) {
+            entries.next();
+        }
+        return page(index, entries, size, false);
+    }
+
+    private static Page page(ConcurrentSkipListMap<StudentOrder.Key, Student> index,
+            Iterator<Map.Entry<StudentOrder.Key, Student>> entries, int size, boolean backwards) {
+        List<Student> students = new ArrayList<>(size);
+        StudentOrder.Key first = null;
+        StudentOrder.Key last = null;
+        while (students.size() < size && entries.hasNext()) {
+            Map.Entry<StudentOrder.Key, Student> entry = entries.next();
+            if (first == null) {
+                first = entry.getKey();
+            }
+            last = entry.getKey();
+            students.add(entry.getValue());
+        }
+        if (first == null) {
+            return new Page(students, null, null);
+        }
+        if (backwards) {
+            Collections.reverse(students);
+            StudentOrder.Key swap = first;
+            first = last;
+            last = swap;
+        }
+        String previous = index.lowerKey(first) != null ? first.toCursor() : null;
+        String next = index.higherKey(last) != null ? last.toCursor() : null;
+        return new Page(students, previous, next);
+    }
+
+    public GradeStatistics statistics() {
+        if (statistics == null) {
+            write(() -> {
+                if (statistics == null) {
+                    rebuildStatistics();
+                }
+            });
+        }
+        return statistics;
+    }
+
+    public Rankings rankings() {
+        if (rankings == null) {
+            write(() -> {
+                if (rankings == null) {
+                    rebuildStatistics();
+                }
+            });
+        }
+        return rankings;
+    }
+
+    // Recomputes the grade statistics and rankings from every student
+    public void rebuildStatistics() {
+        write(() -> {
+            statistics = GradeStatistics.of(roster.values());
+            rankings = Rankings.of(roster.values());
+        });
+    }
+
+    // Built on the first fuzzy search after a load, and kept current from then on
+    public FuzzyIndex fuzzyIndex() {
+        if (fuzzyIndex == null) {
+            write(() -> {
+                if (fuzzyIndex == null) {
+                    fuzzyIndex = FuzzyIndex.of(roster.values());
+                }
+            });
+        }
+        return fuzzyIndex;
+    }
+
+    // Students whose names, email, address, course or phone number look like the text, best first
+    public List<FuzzyIndex.Match> findFuzzy(String text, int limit) {
+        return fuzzyIndex().search(text, limit);
+    }
+
+    // Matching students, read lazily from the plan's starting index
+    public Stream<Student> query(StudentQuery query) {
+        return plan(query).stream();
+    }
+
+    // Starts from whichever index promises the fewest students: one ID, a last name, a first
+    // name, a course, or the range of enrollment dates the query allows. Without any of those the
+    // whole roster is scanned. Large starts are filtered in parallel.
+    public StudentQuery.Plan plan(StudentQuery query) {
+        long estimate = roster.size();
+        String access = "scan of every student";
+        Supplier<Stream<Student>> source = () -> roster.values().stream();
+        List<StudentQuery.Condition> covered = new ArrayList<>();
+        List<StudentQuery.Condition> dates = new ArrayList<>();
+        int first = 1;
+        int last = Integer.MAX_VALUE;
+        for (StudentQuery.Condition condition : query.conditions) {
+            if (condition.onSubjects()) {
+                continue;
+            }
+            StudentQuery.Comparison comparison = condition.comparisons.get(0);
+            if (comparison.field == StudentQuery.Field.ENROLLED && comparison.op != StudentQuery.Op.NE) {
+                int day = comparison.dateKey();
+                switch (comparison.op) {
+                    case EQ:
+                        first = Math.max(first, day);
+                        last = Math.min(last, day);
+                        break;
+                    case LT:
+                        last = Math.min(last, day - 1);
+                        break;
+                    case LE:
+                        last = Math.min(last, day);
+                        break;
+                    case GT:
+                        first = Math.max(first, day + 1);
+                        break;
+                    default:
+                        first = Math.max(first, day);
+                }
+                dates.add(condition);
+                continue;
+            }
+            if (comparison.op != StudentQuery.Op.EQ) {
+                continue;
+            }
+            String value = comparison.text;
+            long size;
+            Supplier<Stream<Student>> lookup;
+            switch (comparison.field) {
+                case ID:
+                    size = byId.containsKey(value) ? 1 : 0;
+                    lookup = () -> Stream.ofNullable(byId.get(value));
+                    break;
+                case LAST_NAME:
+                    size = lastNameIndex.count(value);
+                    lookup = () -> lastNameIndex.bucket(value).stream();
+                    break;
+                case FIRST_NAME:
+                    size = firstNameIndex.count(value);
+                    lookup = () -> firstNameIndex.bucket(value).stream();
+                    break;
+                case COURSE:
+                    size = courseIndex.count(value);
+                    lookup = () -> courseIndex.bucket(value).stream();
+                    break;
+                default:
+                    continue;
+            }
+            if (size < estimate) {
+                estimate = size;
+                access = comparison.field.name + " index lookup of " + value;
+                source = lookup;
+                covered = List.of(condition);
+            }
+        }
+        if (!dates.isEmpty()) {
+            long size = 0;
+            if (first <= last) {
+                for (int students : enrollmentDays.subMap(first, true, last, true).values()) {
+                    size += students;
+                }
+            }
+            if (size < estimate) {
+                estimate = size;
+                access = "enrolled index range";
+                source = enrollmentRange(first, last);
+                covered = dates;
+            }
+        }
+        List<StudentQuery.Condition> remaining = new ArrayList<>(query.conditions);
+        remaining.removeAll(covered);
+        return new StudentQuery.Plan(access, estimate, remaining, estimate >= PARALLEL_QUERY_THRESHOLD, source,
+                query);
+    }
+
+    private Supplier<Stream<Student>> enrollmentRange(int first, int last) {
+        if (first > last) {
+            return Stream::empty;
+        }
+        ConcurrentSkipListMap<StudentOrder.Key, Student> index = orders.get(StudentOrder.ENROLLMENT_DATE);
+        StudentOrder.Key from = new StudentOrder.Key(first, "", "", Long.MIN_VALUE);
+        if (last == Integer.MAX_VALUE) {
+            return () -> index.tailMap(from, true).values().stream();
+        }
+        StudentOrder.Key to = new StudentOrder.Key(last + 1, "", "", Long.MIN_VALUE);
+        return () -> index.subMap(from, true, to, false).values().stream();
+    }
+
+    public List<Student> findByLastName(String lastName) {
+        return lastNameIndex.findExact(lastName, Student::getLastName);
+    }
+
+    public List<Student> findByFirstName(String firstName) {
+        return firstNameIndex.findIgnoreCase(firstName);
+    }
+
+    public List<Student> findByNamePrefix(String prefix) {
+        LinkedHashSet<Student> matches = new LinkedHashSet<>(lastNameIndex.findByPrefix(prefix));
+        matches.addAll(firstNameIndex.findByPrefix(prefix));
+        return new ArrayList<>(matches);
+    }
+
+    // Adds the student unless another student already has its ID; returns whether it was added
+    public boolean add(Student student) {
+        return write(() -> {
+            if (byId.putIfAbsent(student.getId(), student) != null) {
+                return false;
+            }
+            ids.take(student.getId());
+            insert(student);
+            addGrades(student);
+            return true;
+        });
+    }
+
+    // Adds a student read from the data files. A duplicated ID keeps its first row in the ID
+    // index, as the old linear scan did, but every row stays on the roster.
+    public void addLoaded(Student student) {
+        write(() -> {
+            byId.putIfAbsent(student.getId(), student);
+            ids.take(student.getId());
+            insert(student);
+        });
+    }
+
+    // Removes the student; an older version of it removes the current one
+    public void remove(Student student) {
+        write(() -> {
+            Student current = roster.get(student.sequence);
+            if (current == null) {
+                return;
+            }
+            roster.remove(current.sequence, current);
+            byId.remove(current.getId(), current);
+            unindex(current);
+            removeGrades(current);
+            current.releaseGrades();
+        });
+    }
+
+    // Changes a copy of the student and swaps it in for the stored one, so readers see the
+    // student as it was before the change or after it, never partway. The student passed may be
+    // an older version of the stored one. Returns the new version, or null if the student has
+    // been removed. The name indexes, the statistics and the rankings follow the change.
+    public Student update(Student student, Consumer<Student> change) {
+        return write(() -> {
+            Student current = roster.get(student.sequence);
+            if (current == null) {
+                return null;
+            }
+            Student copy = current.copy();
+            try {
+                change.accept(copy);
+            } catch (RuntimeException | Error e) {
+                copy.releaseGrades();
+                throw e;
+            }
+            swap(current, copy);
+            return copy;
+        });
+    }
+
+    // Runs a compound change, such as editing a student's subjects and grades, with no other
+    // writer in between
+    public void write(Runnable change) {
+        writeLock.lock();
+        try {
+            change.run();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public <T> T write(Supplier<T> change) {
+        writeLock.lock();
+        try {
+            return change.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void clear() {
+        write(() -> {
+            byId.clear();
+            ids.clear();
+            roster.clear();
+            lastNameIndex.clear();
+            firstNameIndex.clear();
+            courseIndex.clear();
+            enrollmentDays.clear();
+            statistics = null;
+            rankings = null;
+            fuzzyIndex = null;
+            for (ConcurrentSkipListMap<StudentOrder.Key, Student> index : orders.values()) {
+                index.clear();
+            }
+        });
+    }
+
+    private void insert(Student student) {
+        student.sequence = nextSequence.incrementAndGet();
+        roster.put(student.sequence, student);
+        index(student);
+    }
+
+    private void index(Student student) {
+        lastNameIndex.add(student.getLastName(), student);
+        firstNameIndex.add(student.getFirstName(), student);
+        if (student.getCourse() != null) {
+            courseIndex.add(student.getCourse(), student);
+        }
+        enrollmentDays.merge(StudentOrder.dateKey(student.getDateOfEnrollment()), 1, Integer::sum);
+        if (fuzzyIndex != null) {
+            fuzzyIndex.add(student);
+        }
+        for (Map.Entry<StudentOrder, ConcurrentSkipListMap<StudentOrder.Key, Student>> order : orders.entrySet()) {
+            order.getValue().put(order.getKey().keyOf(student), student);
+        }
+    }
+
+    // Both are only called under the write lock, where statistics and rankings are set together
+    private void addGrades(Student student) {
+        if (statistics != null) {
+            statistics.add(student);
+            rankings.add(student);
+        }
+    }
+
+    private void removeGrades(Student student) {
+        if (statistics != null) {
+            statistics.remove(student);
+            rankings.remove(student);
+        }
+    }
+
+    // Puts the copy in the current version's place in every index. Each entry for the copy goes
+    // in before the old one comes out, and one under an unchanged key simply replaces it, so a
+    // lookup never misses the student while it changes.
+    private void swap(Student current, Student copy) {
+        roster.put(copy.sequence, copy);
+        byId.replace(copy.getId(), current, copy);
+        lastNameIndex.add(copy.getLastName(), copy);
+        lastNameIndex.remove(current.getLastName(), current);
+        firstNameIndex.add(copy.getFirstName(), copy);
+        firstNameIndex.remove(current.getFirstName(), current);
+        if (copy.getCourse() != null) {
+            courseIndex.add(copy.getCourse(), copy);
+        }
+        if (current.getCourse() != null) {
+            courseIndex.remove(current.getCourse(), current);
+        }
+        enrollmentDays.merge(StudentOrder.dateKey(copy.getDateOfEnrollment()), 1, Integer::sum);
+        enrollmentDays.merge(StudentOrder.dateKey(current.getDateOfEnrollment()), -1,
+                (students, delta) -> students + delta == 0 ? null : students + delta);
+        if (fuzzyIndex != null) {
+            fuzzyIndex.replace(current, copy);
+        }
+        for (Map.Entry<StudentOrder, ConcurrentSkipListMap<StudentOrder.Key, Student>> order : orders.entrySet()) {
+            order.getValue().put(order.getKey().keyOf(copy), copy);
+            order.getValue().remove(order.getKey().keyOf(current), current);
+        }
+        removeGrades(current);
+        addGrades(copy);
+        current.releaseGrades();
+    }
+
+    private void unindex(Student student) {
+        lastNameIndex.remove(student.getLastName(), student);
+        firstNameIndex.remove(student.getFirstName(), student);
+        if (student.getCourse() != null) {
+            courseIndex.remove(student.getCourse(), student);
+        }
+        enrollmentDays.merge(StudentOrder.dateKey(student.getDateOfEnrollment()), -1,
+                (students, delta) -> students + delta == 0 ? null : students + delta);
+        if (fuzzyIndex != null) {
+            fuzzyIndex.remove(student);
+        }
+        for (Map.Entry<StudentOrder, ConcurrentSkipListMap<StudentOrder.Key, Student>> order : orders.entrySet()) {
+            order.getValue().remove(order.getKey().keyOf(student));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+// Draws the bordered text tables used by the console listings. A Layout fixes the column
+// headings and widths once, with the border and heading lines built ahead of time. Rows are
+// padded by hand into one reusable buffer, which goes to the writer in large writes, so a table
+// of a million rows costs about as much as copying its text. Cells wider than their column
+// push the rest of the row out, like %-Ns did.
+class TableRenderer {
+    private static final int FLUSH_AT = 1 << 16;
+
+    static final class Layout {
+        final int[] widths;
+        final String border;
+        final String headings;
+
+        Layout(String[] headings, int[] widths) {
+            this.widths = widths.clone();
+            StringBuilder border = new StringBuilder("+");
+            StringBuilder line = new StringBuilder("|");
+            for (int i = 0; i < widths.length; i++) {
+                border.append("-".repeat(widths[i] + 2)).append('+');
+                line.append(' ').append(headings[i]).append(" ".repeat(Math.max(0, widths[i] - headings[i].length())))
+                        .append(" |");
+            }
+            this.border = border.append('\n').toString();
+            this.headings = line.append('\n').toString();
+        }
+    }
+
+    static final Layout STUDENTS = new Layout(
+            new String[] { "ID", "Last Name", "First Name", "Middle Name", "Address", "Gender", "Phone Number",
+                    "Email Address", "Date of Birth", "Course", "Date of Enrollment" },
+            new int[] { 7, 15, 15, 15, 27, 6, 12, 33, 13, 6, 18 });
+
+    static final Layout SUBJECTS = new Layout(
+            new String[] { "Subject", "Course No.", "Instructor", "Prelim", "Midterm", "Final", "Final Rating" },
+            new int[] { 30, 12, 20, 8, 8, 8, 12 });
+
+    static final Layout GRADE_REPORT = new Layout(
+            new String[] { "Group", "Grades", "Mean", "Median", "P25", "P75", "P90", "Pass %", "Below 60", "60-69",
+                    "70-79", "80-89", "90-100" },
+            new int[] { 30, 7, 6, 6, 6, 6, 6, 6, 8, 6, 6, 6, 6 });
+
+    static final Layout RANKING = new Layout(
+            new String[] { "Rank", "ID", "Last Name", "First Name", "Course", "GWA" },
+            new int[] { 6, 7, 15, 15, 6, 6 });
+
+    static final Layout FUZZY_MATCHES = new Layout(
+            new String[] { "Match", "ID", "Last Name", "First Name", "Email Address", "Address", "Course",
+                    "Phone Number" },
+            new int[] { 5, 7, 15, 15, 33, 27, 6, 12 });
+
+    private final Writer out;
+    private final Layout layout;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_AT + 1024);
+    private char[] chars = new char[0];
+    private final char decimalSeparator = DecimalFormatSymbols
+            .getInstance(Locale.getDefault(Locale.Category.FORMAT)).getDecimalSeparator();
+    private int column;
+
+    TableRenderer(Writer out, Layout layout) {
+        this.out = out;
+        this.layout = layout;
+    }
+
+    // Top border, headings and the border under them
+    TableRenderer header() {
+        buffer.append(layout.border).append(layout.headings).append(layout.border);
+        return this;
+    }
+
+    TableRenderer footer() {
+        buffer.append(layout.border);
+        return this;
+    }
+
+    TableRenderer cell(String value) {
+        if (column == 0) {
+            buffer.append('|');
+        }
+        buffer.append(' ');
+        int start = buffer.length();
+        buffer.append(value);
+        for (int pad = layout.widths[column] - (buffer.length() - start); pad > 0; pad--) {
+            buffer.append(' ');
+        }
+        buffer.append(" |");
+        column++;
+        return this;
+    }
+
+    TableRenderer cell(int value) {
+        return cell(Integer.toString(value));
+    }
+
+    // Two decimals, rounded half up from the shortest decimal form of the value as %.2f does
+    TableRenderer cell(double value) {
+        String text = new BigDecimal(Double.toString(value)).setScale(2, RoundingMode.HALF_UP).toPlainString();
+        return cell(decimalSeparator == '.' ? text : text.replace('.', decimalSeparator));
+    }
+
+    // Ends the row and hands the buffer to the writer once it is large
+    void endRow() {
+        buffer.append('\n');
+        column = 0;
+        if (buffer.length() >= FLUSH_AT) {
+            drain();
+        }
+    }
+
+    // Writes out whatever is buffered and flushes the writer
+    void flush() {
+        drain();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain() {
+        int length = buffer.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, FLUSH_AT + 1024)];
+        }
+        buffer.getChars(0, length, chars, 0);
+        try {
+            out.write(chars, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.setLength(0);
+    }
+}
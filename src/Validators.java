@@ -0,0 +1,279 @@
+import java.util.regex.Pattern;
+
+// Field validation for the menu and the bulk importer. Phone numbers, dates, names, course
+// numbers and instructor names are checked by hand-written scanners that allocate nothing;
+// addresses and email addresses go through patterns compiled once. Every check returns a
+// Result code instead of a boolean so callers can say what was wrong.
+class Validators {
+    enum Result {
+        VALID("valid"),
+        EMPTY("is empty"),
+        WRONG_LENGTH("has the wrong length"),
+        NOT_CAPITALIZED("must start with a capital letter"),
+        NOT_A_LETTER("must contain letters only"),
+        NOT_A_DIGIT("must contain digits only"),
+        BAD_SEPARATOR("has an invalid separator"),
+        OUT_OF_RANGE("is out of range"),
+        UNKNOWN_VALUE("is not one of the allowed values"),
+        BAD_FORMAT("is not in the expected format");
+
+        final String description;
+
+        Result(String description) {
+            this.description = description;
+        }
+
+        boolean isValid() {
+            return this == VALID;
+        }
+    }
+
+    static final String EMAIL_REGEX = "^[^\\.][a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}$";
+    static final String ADDRESS_REGEX = "^\\d*\\s*[A-Z][a-zA-Z]+\\s[A-Z][a-zA-Z]+\\s[A-Z][a-zA-Z]+$";
+    private static final Pattern EMAIL = Pattern.compile(EMAIL_REGEX);
+    private static final Pattern ADDRESS = Pattern.compile(ADDRESS_REGEX);
+
+    // Dates of birth are day first and may use any of these separators; enrollment dates are
+    // month first with slashes only
+    private static final String BIRTH_DATE_SEPARATORS = "- /.";
+    private static final String ENROLLMENT_DATE_SEPARATORS = "/";
+
+    // ^[A-Z][a-zA-Z]*$
+    static Result name(CharSequence value) {
+        if (value.length() == 0) {
+            return Result.EMPTY;
+        }
+        if (!isUpper(value.charAt(0))) {
+            return Result.NOT_CAPITALIZED;
+        }
+        for (int i = 1; i < value.length(); i++) {
+            if (!isLetter(value.charAt(i))) {
+                return Result.NOT_A_LETTER;
+            }
+        }
+        return Result.VALID;
+    }
+
+    // ^([A-Z][a-zA-Z]*\s){1,}[A-Z][a-zA-Z]*$
+    static Result instructorName(CharSequence value) {
+        if (value.length() == 0) {
+            return Result.EMPTY;
+        }
+        int words = 0;
+        int wordStart = 0;
+        for (int i = 0; i <= value.length(); i++) {
+            if (i < value.length() && !isSpace(value.charAt(i))) {
+                continue;
+            }
+            if (i == wordStart) {
+                return Result.BAD_SEPARATOR;
+            }
+            if (!isUpper(value.charAt(wordStart))) {
+                return Result.NOT_CAPITALIZED;
+            }
+            for (int j = wordStart + 1; j < i; j++) {
+                if (!isLetter(value.charAt(j))) {
+                    return Result.NOT_A_LETTER;
+                }
+            }
+            words++;
+            wordStart = i + 1;
+        }
+        return words >= 2 ? Result.VALID : Result.BAD_FORMAT;
+    }
+
+    static Result address(CharSequence value) {
+        if (value.length() == 0) {
+            return Result.EMPTY;
+        }
+        return ADDRESS.matcher(value).matches() ? Result.VALID : Result.BAD_FORMAT;
+    }
+
+    static Result emailAddress(CharSequence value) {
+        if (value.length() == 0) {
+            return Result.EMPTY;
+        }
+        return EMAIL.matcher(value).matches() ? Result.VALID : Result.BAD_FORMAT;
+    }
+
+    // \d{10}
+    static Result phoneNumber(CharSequence value) {
+        return digits(value, 10);
+    }
+
+    // ^[0-9]{6}$
+    static Result courseNumber(CharSequence value) {
+        return digits(value, 6);
+    }
+
+    // Generated student IDs are seven digits
+    static Result studentId(CharSequence value) {
+        return digits(value, 7);
+    }
+
+    // m, male, f or female in any case
+    static Result gender(String value) {
+        if (value.isEmpty()) {
+            return Result.EMPTY;
+        }
+        return normalizeGender(value) != null ? Result.VALID : Result.UNKNOWN_VALUE;
+    }
+
+    // Returns "M" or "F" for a valid gender, null otherwise
+    static String normalizeGender(String value) {
+        if (value.equalsIgnoreCase("m") || value.equalsIgnoreCase("male")) {
+            return "M";
+        }
+        if (value.equalsIgnoreCase("f") || value.equalsIgnoreCase("female")) {
+            return "F";
+        }
+        return null;
+    }
+
+    // ^(BSCS|BSIT|BSCoE)$
+    static Result course(String value) {
+        if (value.isEmpty()) {
+            return Result.EMPTY;
+        }
+        switch (value) {
+            case "BSCS":
+            case "BSIT":
+            case "BSCoE":
+                return Result.VALID;
+            default:
+                return Result.UNKNOWN_VALUE;
+        }
+    }
+
+    // A whole-number exam score from 0 to 100
+    static Result score(CharSequence value) {
+        if (value.length() == 0) {
+            return Result.EMPTY;
+        }
+        if (value.length() > 3) {
+            return Result.OUT_OF_RANGE;
+        }
+        int score = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return Result.NOT_A_DIGIT;
+            }
+            score = score * 10 + (c - '0');
+        }
+        return score <= 100 ? Result.VALID : Result.OUT_OF_RANGE;
+    }
+
+    // ^(0?[1-9]|[12][0-9]|3[01])[- /.](0?[1-9]|1[012])[- /.](19|20)\d\d$
+    static Result dateOfBirth(CharSequence value) {
+        return date(value, 31, 12, BIRTH_DATE_SEPARATORS, 1900, 2099);
+    }
+
+    // ^(0?[1-9]|1[0-2])/(0?[1-9]|[12][0-9]|3[01])/(19|20)\d\d$
+    static Result dateOfEnrollment(CharSequence value) {
+        return date(value, 12, 31, ENROLLMENT_DATE_SEPARATORS, 1900, 2099);
+    }
+
+    // An enrollment date within the given year
+    static Result dateOfEnrollment(CharSequence value, int year) {
+        return date(value, 12, 31, ENROLLMENT_DATE_SEPARATORS, year, year);
+    }
+
+    // Drops the leading zero of each date part ("05/07/2001" becomes "5/7/2001"), the same as
+    // replaceAll("\\b(0(?=[1-9]))", "")
+    static String stripLeadingZeros(String date) {
+        StringBuilder stripped = null;
+        for (int i = 0; i < date.length(); i++) {
+            char c = date.charAt(i);
+            boolean leadingZero = c == '0' && (i == 0 || !isWordChar(date.charAt(i - 1)))
+                    && i + 1 < date.length() && date.charAt(i + 1) >= '1' && date.charAt(i + 1) <= '9';
+            if (leadingZero && stripped == null) {
+                stripped = new StringBuilder(date.length()).append(date, 0, i);
+            } else if (!leadingZero && stripped != null) {
+                stripped.append(c);
+            }
+        }
+        return stripped == null ? date : stripped.toString();
+    }
+
+    // Two one- or two-digit parts bounded by firstMax and secondMax, then a four-digit year. A
+    // part may have a leading zero but may not be zero.
+    private static Result date(CharSequence value, int firstMax, int secondMax, String separators, int minYear,
+            int maxYear) {
+        int length = value.length();
+        if (length == 0) {
+            return Result.EMPTY;
+        }
+        if (length < 8 || length > 10) {
+            return Result.WRONG_LENGTH;
+        }
+        int pos = 0;
+        for (int part = 0; part < 2; part++) {
+            int start = pos;
+            int number = 0;
+            while (pos < length && pos - start < 3 && isDigit(value.charAt(pos))) {
+                number = number * 10 + (value.charAt(pos) - '0');
+                pos++;
+            }
+            if (pos == start || pos - start > 2) {
+                return Result.BAD_FORMAT;
+            }
+            if (number < 1 || number > (part == 0 ? firstMax : secondMax)) {
+                return Result.OUT_OF_RANGE;
+            }
+            if (pos >= length || separators.indexOf(value.charAt(pos)) < 0) {
+                return Result.BAD_SEPARATOR;
+            }
+            pos++;
+        }
+        if (length - pos != 4) {
+            return Result.WRONG_LENGTH;
+        }
+        int year = 0;
+        for (; pos < length; pos++) {
+            char c = value.charAt(pos);
+            if (!isDigit(c)) {
+                return Result.NOT_A_DIGIT;
+            }
+            year = year * 10 + (c - '0');
+        }
+        return year >= minYear && year <= maxYear ? Result.VALID : Result.OUT_OF_RANGE;
+    }
+
+    private static Result digits(CharSequence value, int count) {
+        if (value.length() == 0) {
+            return Result.EMPTY;
+        }
+        if (value.length() != count) {
+            return Result.WRONG_LENGTH;
+        }
+        for (int i = 0; i < count; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return Result.NOT_A_DIGIT;
+            }
+        }
+        return Result.VALID;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isLetter(char c) {
+        return isUpper(c) || (c >= 'a' && c <= 'z');
+    }
+
+    // The characters \s matches
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    // The characters \b treats as part of a word
+    private static boolean isWordChar(char c) {
+        return isLetter(c) || isDigit(c) || c == '_';
+    }
+}